@@ -42,6 +42,11 @@ import me.glaremasters.guilds.configuration.sections.PluginSettings;
 import me.glaremasters.guilds.configuration.sections.StorageSettings;
 import me.glaremasters.guilds.cooldowns.CooldownHandler;
 import me.glaremasters.guilds.database.DatabaseAdapter;
+import me.glaremasters.guilds.database.DatabaseBackend;
+import me.glaremasters.guilds.database.adapters.StorageGson;
+import me.glaremasters.guilds.database.snapshot.Snapshot;
+import me.glaremasters.guilds.database.snapshot.SnapshotReader;
+import me.glaremasters.guilds.database.snapshot.SnapshotWriter;
 import me.glaremasters.guilds.dependency.Libraries;
 import me.glaremasters.guilds.guild.GuildHandler;
 import me.glaremasters.guilds.guis.GUIHandler;
@@ -66,13 +71,19 @@ import org.bukkit.Bukkit;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 public final class Guilds extends JavaPlugin {
 
     private static GuildsAPI api;
     private static Gson gson;
+    private static Gson storageGson;
     private ACFHandler acfHandler;
     private GuildHandler guildHandler;
     private CooldownHandler cooldownHandler;
@@ -86,11 +97,16 @@ public final class Guilds extends JavaPlugin {
     private GUIHandler guiHandler;
     private Economy economy;
     private Permission permissions;
+    private Snapshot snapshot;
 
     public static Gson getGson() {
         return gson;
     }
 
+    public static Gson getStorageGson() {
+        return storageGson;
+    }
+
     public static GuildsAPI getApi() {
         return Guilds.api;
     }
@@ -98,10 +114,12 @@ public final class Guilds extends JavaPlugin {
     @Override
     public void onDisable() {
         if (checkVault() && economy != null) {
+            guildHandler.drainWriteQueue();
             try {
                 guildHandler.saveData();
                 cooldownHandler.saveCooldowns();
                 arenaHandler.saveArenas();
+                writeSnapshot();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -143,6 +161,7 @@ public final class Guilds extends JavaPlugin {
         }
 
         gson = new GsonBuilder().setPrettyPrinting().create();
+        storageGson = StorageGson.create();
 
         setupEconomy();
         setupPermissions();
@@ -183,6 +202,8 @@ public final class Guilds extends JavaPlugin {
                 // Jump down to the catch
                 throw new IOException("Failed to connect to Database.");
             }
+            // Use the snapshot from the last shutdown if there is a valid one
+            snapshot = loadSnapshot();
             // Load the cooldown objects
             cooldownHandler = new CooldownHandler(this);
             // Load the arena objects
@@ -192,6 +213,8 @@ public final class Guilds extends JavaPlugin {
             challengeHandler = new ChallengeHandler(this);
             // Load guildhandler with provider
             guildHandler = new GuildHandler(this, settingsHandler.getMainConf());
+            // Everything has been loaded, the snapshot is only good for one start
+            snapshot = null;
         } catch (IOException e) {
             LoggingUtils.severe("An error occurred loading data! Stopping plugin..");
             Bukkit.getPluginManager().disablePlugin(this);
@@ -245,20 +268,90 @@ public final class Guilds extends JavaPlugin {
         api = new GuildsAPI(guildHandler, cooldownHandler);
 
         LoggingUtils.info("Ready to go! That only took " + (System.currentTimeMillis() - startingTime) + "ms");
-        getServer().getScheduler().scheduleAsyncRepeatingTask(this, () -> {
-            try {
-                if (guildHandler.isMigrating()) {
-                    return;
-                }
-                guildHandler.saveData();
-                //cooldownHandler.saveCooldowns(); We are going to save on shutdown only, no need for runtime saving
-                arenaHandler.saveArenas();
-                challengeHandler.saveData();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // Vault contents are copied on the main thread, everything is then serialized and written async
+        getServer().getScheduler().runTaskTimer(this, () -> {
+            if (guildHandler.isMigrating()) {
+                return;
             }
+            guildHandler.copyVaults(vaults -> newChain().async(() -> {
+                try {
+                    guildHandler.saveData(vaults);
+                    //cooldownHandler.saveCooldowns(); We are going to save on shutdown only, no need for runtime saving
+                    arenaHandler.saveArenas();
+                    challengeHandler.saveData();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }).execute());
         }, 20 * 60, (20 * 60) * settingsHandler.getMainConf().getProperty(StorageSettings.SAVE_INTERVAL));
+        // Unload vaults and guilds nobody is using, this checks the viewers so it runs on the main thread
+        getServer().getScheduler().runTaskTimer(this, () -> {
+            guildHandler.unloadIdleVaults();
+            guildHandler.unloadIdleGuilds();
+        }, 20 * 60, 20 * 60);
+        getServer().getScheduler().runTaskTimer(this, cooldownHandler::expireCooldowns, 20, 20);
+
+    }
+
+    /**
+     * Read the snapshot written on the last clean shutdown, falling back to the storage if it can't be used
+     *
+     * @return the snapshot or null
+     */
+    private Snapshot loadSnapshot() {
+        File file = new File(getDataFolder(), Snapshot.FILE_NAME);
+        // Loading guilds on demand never has all of them in memory, so there is nothing to snapshot
+        if (!settingsHandler.getMainConf().getProperty(StorageSettings.SNAPSHOT_ENABLED) || settingsHandler.getMainConf().getProperty(StorageSettings.LAZY_LOADING) || !file.exists()) {
+            return null;
+        }
+        Snapshot loaded = null;
+        try {
+            long maxAge = TimeUnit.MINUTES.toMillis(settingsHandler.getMainConf().getProperty(StorageSettings.SNAPSHOT_MAX_AGE));
+            long marker = database.getGuildAdapter().getStorageMarker();
+            loaded = SnapshotReader.read(file, database.getBackend().getBackendName(), database.getSqlTablePrefix(), marker, maxAge, getJsonFolders());
+            if (loaded == null) {
+                LoggingUtils.info("The data snapshot is out of date, loading from storage instead.");
+            }
+        } catch (IOException e) {
+            LoggingUtils.warn("The data snapshot could not be read, loading from storage instead: " + e.getMessage());
+        }
+        // A snapshot is only valid right after the shutdown that wrote it. No deleteOnExit fallback here,
+        // it would also delete the snapshot written on the next shutdown.
+        if (!file.delete()) {
+            LoggingUtils.warn("The data snapshot could not be deleted, it will be replaced on shutdown.");
+        }
+        return loaded;
+    }
+
+    /**
+     * Write a snapshot of everything that was just saved so the next start can skip reading the storage
+     */
+    private void writeSnapshot() {
+        if (!settingsHandler.getMainConf().getProperty(StorageSettings.SNAPSHOT_ENABLED) || guildHandler.isLazy() || guildHandler.isMigrating()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            SnapshotWriter.write(new File(getDataFolder(), Snapshot.FILE_NAME), database.getBackend().getBackendName(), database.getSqlTablePrefix(),
+                    database.getGuildAdapter().getStorageMarker(), guildHandler.getGuilds(), arenaHandler.getArenas(), cooldownHandler.getActiveCooldowns().values());
+            LoggingUtils.info("Wrote data snapshot in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (IOException e) {
+            LoggingUtils.warn("Failed to write the data snapshot: " + e.getMessage());
+            // Never leave an older snapshot behind for the next start to pick up
+            new File(getDataFolder(), Snapshot.FILE_NAME).delete();
+        }
+    }
 
+    /**
+     * Get the json data folders a snapshot has to be newer than
+     *
+     * @return folders, empty if the storage is sql
+     */
+    private List<File> getJsonFolders() {
+        if (database.getBackend() != DatabaseBackend.JSON) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(new File(getDataFolder(), "data"), new File(getDataFolder(), "arenas"), new File(getDataFolder(), "cooldowns"));
     }
 
     /**
@@ -341,6 +434,10 @@ public final class Guilds extends JavaPlugin {
         return this.challengeHandler;
     }
 
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
     public DatabaseAdapter getDatabase() {
         return this.database;
     }
@@ -182,7 +182,7 @@ public class ChallengeHandler {
      * @return enough players online
      */
     public boolean checkEnoughOnline(Guild challenger, Guild defender, int amount) {
-        return challenger.getOnlineAsPlayers().size() >= amount && defender.getOnlineAsPlayers().size() >= amount;
+        return challenger.getOnlineCount() >= amount && defender.getOnlineCount() >= amount;
     }
 
     /**
@@ -284,6 +284,8 @@ public class ChallengeHandler {
             challenge.setLoser(challenge.getChallenger());
             challenge.getDefender().getGuildScore().addWin();
             challenge.getChallenger().getGuildScore().addLoss();
+            challenge.getDefender().markDirty();
+            challenge.getChallenger().markDirty();
             return true;
         }
         if (challenge.getAliveDefenders().keySet().size() == 0) {
@@ -291,6 +293,8 @@ public class ChallengeHandler {
             challenge.setLoser(challenge.getDefender());
             challenge.getDefender().getGuildScore().addLoss();
             challenge.getChallenger().getGuildScore().addWin();
+            challenge.getDefender().markDirty();
+            challenge.getChallenger().markDirty();
             return true;
         }
         return false;
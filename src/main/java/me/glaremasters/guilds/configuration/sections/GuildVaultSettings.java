@@ -60,6 +60,11 @@ public class GuildVaultSettings implements SettingsHolder {
     public static final Property<List<String>> BLACKLIST_LORES =
             newListProperty("guis.vault.blacklist.lores", "");
 
+    @Comment({"How long (in minutes) can a vault go unused before it is unloaded from memory?",
+    "Vaults are loaded again the next time they are opened."})
+    public static final Property<Integer> VAULT_UNLOAD_TIME =
+            newProperty("guis.vault.unload-time", 5);
+
     private GuildVaultSettings() {
 
     }
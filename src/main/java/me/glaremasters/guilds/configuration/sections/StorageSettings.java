@@ -41,6 +41,65 @@ public class StorageSettings implements SettingsHolder {
     public static final Property<Integer> SAVE_INTERVAL =
             newProperty("storage.save-interval", 1);
 
+    @Comment({"Write guilds a moment after they change instead of only on the save interval.",
+            "Changes made to a guild within the window are written together."})
+    public static final Property<Boolean> WRITE_BEHIND_ENABLED =
+            newProperty("storage.write-behind.enabled", true);
+
+    @Comment("How long (in milliseconds) changes are collected before they are written")
+    public static final Property<Integer> WRITE_BEHIND_WINDOW =
+            newProperty("storage.write-behind.window", 2000);
+
+    @Comment("How long (in seconds) the server waits for queued changes to be written when it shuts down")
+    public static final Property<Integer> WRITE_BEHIND_SHUTDOWN_TIMEOUT =
+            newProperty("storage.write-behind.shutdown-timeout", 10);
+
+    @Comment({"Only used with json storage. Write balance and member changes to a small journal as soon as they happen,",
+            "so they survive a crash even before the guild file is written again. The journal is replayed on startup."})
+    public static final Property<Boolean> JOURNAL_ENABLED =
+            newProperty("storage.journal.enabled", false);
+
+    @Comment("How big (in kilobytes) the journal may get before it's folded into the guild files")
+    public static final Property<Integer> JOURNAL_COMPACT_SIZE =
+            newProperty("storage.journal.compact-size", 1024);
+
+    @Comment({"Write a snapshot of all data when the server shuts down and read it on the next start instead of the storage.",
+            "The storage is still used if the snapshot is missing, too old, or was taken with a different storage type.",
+            "It is also skipped if guilds were created or deleted in the storage since, but changes to existing guilds made by",
+            "another server are not noticed, so only enable this with MySQL or MariaDB if no other server writes to the same database."})
+    public static final Property<Boolean> SNAPSHOT_ENABLED =
+            newProperty("storage.snapshot.enabled", false);
+
+    @Comment("How old (in minutes) a snapshot can be and still be used")
+    public static final Property<Integer> SNAPSHOT_MAX_AGE =
+            newProperty("storage.snapshot.max-age", 30);
+
+    @Comment({"Only load a small index of guilds on start and load guilds from storage the first time they are used.",
+            "Guilds with online members always stay loaded, the others are unloaded once they are idle or too many are loaded.",
+            "The guild list menu shows every guild but only loads the ones on the page being viewed, so it can only be sorted",
+            "by name or by member count while this is on.",
+            "The data snapshot is not used while this is on."})
+    public static final Property<Boolean> LAZY_LOADING =
+            newProperty("storage.lazy-loading.enabled", false);
+
+    @Comment("How many guilds without online members can stay loaded")
+    public static final Property<Integer> LAZY_LOADING_MAX_GUILDS =
+            newProperty("storage.lazy-loading.max-guilds", 500);
+
+    @Comment("How long (in minutes) a guild without online members stays loaded after it was last used")
+    public static final Property<Integer> LAZY_LOADING_IDLE_TIME =
+            newProperty("storage.lazy-loading.idle-time", 10);
+
+    @Comment({"How long (in milliseconds) a player logging in may wait for their guild to be loaded.",
+            "The guild keeps loading in the background after that and the player is let in."})
+    public static final Property<Integer> LOGIN_PREFETCH_TIMEOUT =
+            newProperty("storage.login-prefetch-timeout", 2000);
+
+    @Comment({"Store guilds in separate tables for members, allies, invites, codes and vaults instead of one json column.",
+            "The existing guild table is copied over once the first time this is enabled and is left as it is afterwards."})
+    public static final Property<Boolean> SQL_NORMALIZED =
+            newProperty("storage.sql.normalized", false);
+
     @Comment("Define the address for the database. (Doesn't apply to SQLite)")
     public static final Property<String> SQL_HOST =
             newProperty("storage.sql.host", "localhost");
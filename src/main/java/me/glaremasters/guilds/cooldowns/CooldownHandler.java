@@ -24,15 +24,19 @@
 
 package me.glaremasters.guilds.cooldowns;
 
-import co.aikar.commands.lib.expiringmap.ExpirationPolicy;
-import co.aikar.commands.lib.expiringmap.ExpiringMap;
 import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.snapshot.Snapshot;
 import me.glaremasters.guilds.guild.Guild;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -44,29 +48,41 @@ import java.util.concurrent.TimeUnit;
  * Created by Glare
  * Date: 5/15/2019
  * Time: 9:40 AM
+ *
+ * Cooldowns are kept by type and owner, so looking one up doesn't depend on how many there are.
+ * Expired cooldowns are dropped by a {@link CooldownWheel} that is moved along by {@link #expireCooldowns()}.
  */
 public class CooldownHandler {
-    private final ExpiringMap<UUID, Cooldown> cooldowns;
+    private static final long TICK = 1000;
+    // Type -> owner -> cooldown, guarded by this
+    private final Map<Cooldown.Type, Map<UUID, CooldownWheel.Node>> cooldowns = new EnumMap<>(Cooldown.Type.class);
+    private final CooldownWheel wheel = new CooldownWheel(TICK, System.currentTimeMillis());
     private final Guilds guilds;
 
     public CooldownHandler(Guilds guilds) {
         this.guilds = guilds;
-        cooldowns = ExpiringMap.builder().variableExpiration().expirationListener((key, cooldown) -> {
-        }).build();
+        for (Cooldown.Type type : Cooldown.Type.values()) {
+            cooldowns.put(type, new HashMap<>());
+        }
 
+        Snapshot snapshot = guilds.getSnapshot();
         Guilds.newChain().async(() -> {
             try {
-                List<Cooldown> saved = guilds.getDatabase().getCooldownAdapter().getAllCooldowns();
+                List<Cooldown> saved = snapshot != null ? snapshot.getCooldowns() : guilds.getDatabase().getCooldownAdapter().getAllCooldowns();
+                boolean expired = false;
                 for (Cooldown cooldown : saved) {
                     // If the time in the cooldown is LESS THAN the current time, then that time has already passed
                     if (cooldown.getCooldownExpiry() < System.currentTimeMillis()) {
-                        // Since the time has already passed, let's remove it
-                        guilds.getDatabase().getCooldownAdapter().deleteCooldown(cooldown);
+                        expired = true;
                     } else {
                         // The time has not past, we won't remove it
                         addCooldown(cooldown);
                     }
                 }
+                // Remove every expired cooldown from storage in one pass
+                if (expired) {
+                    guilds.getDatabase().getCooldownAdapter().saveCooldowns(Collections.emptyList());
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -78,7 +94,14 @@ public class CooldownHandler {
      * @throws IOException
      */
     public void saveCooldowns() {
-        guilds.getDatabase().getCooldownAdapter().saveCooldowns(cooldowns.values());
+        guilds.getDatabase().getCooldownAdapter().saveCooldowns(getActiveCooldowns().values());
+    }
+
+    /**
+     * Drop the cooldowns that ran out since the last call, meant to run about once per second
+     */
+    public synchronized void expireCooldowns() {
+        wheel.advance(System.currentTimeMillis(), node -> cooldowns.get(node.cooldown.getCooldownType()).remove(node.cooldown.getCooldownOwner(), node));
     }
 
     /**
@@ -88,7 +111,8 @@ public class CooldownHandler {
      * @return cooldown
      */
     public Cooldown getCooldown(@NotNull Cooldown.Type cooldownType, @NotNull UUID cooldownOwner) {
-        return cooldowns.values().stream().filter(c -> c.getCooldownType() == cooldownType && c.getCooldownOwner().equals(cooldownOwner)).findFirst().orElse(null);
+        CooldownWheel.Node node = getActive(cooldownType, cooldownOwner, System.currentTimeMillis());
+        return node != null ? node.cooldown : null;
     }
 
     /**
@@ -108,8 +132,7 @@ public class CooldownHandler {
      * @return true or false
      */
     public boolean hasCooldown(@NotNull Cooldown.Type cooldownType, @NotNull UUID cooldownOwner) {
-        Cooldown cooldown = getCooldown(cooldownType, cooldownOwner);
-        return cooldown != null && cooldown.getCooldownExpiry() > System.currentTimeMillis();
+        return getActive(cooldownType, cooldownOwner, System.currentTimeMillis()) != null;
     }
 
     public int getRemaining(String cooldownType, UUID cooldownOwner) {
@@ -123,9 +146,12 @@ public class CooldownHandler {
      * @return time left
      */
     public int getRemaining(Cooldown.Type cooldownType, UUID cooldownOwner) {
-        int int1 = Integer.parseInt(String.format("%d", TimeUnit.MILLISECONDS.toSeconds(getCooldown(cooldownType, cooldownOwner).getCooldownExpiry())));
-        int int2 = Integer.parseInt(String.format("%d", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())));
-        return int1 - int2;
+        long now = System.currentTimeMillis();
+        CooldownWheel.Node node = getActive(cooldownType, cooldownOwner, now);
+        if (node == null) {
+            return 0;
+        }
+        return (int) (TimeUnit.MILLISECONDS.toSeconds(node.expiry) - TimeUnit.MILLISECONDS.toSeconds(now));
     }
 
     /**
@@ -156,17 +182,71 @@ public class CooldownHandler {
      * @param timeUnit unit of time
      */
     public void addCooldown(Cooldown.Type cooldownType, UUID cooldownOwner, int length, TimeUnit timeUnit) {
-        Cooldown cooldown = new Cooldown(cooldownType, cooldownOwner, (System.currentTimeMillis() + timeUnit.toMillis(length)));
-        cooldowns.put(cooldown.getCooldownId(), cooldown, ExpirationPolicy.CREATED, length, timeUnit);
+        addCooldown(new Cooldown(cooldownType, cooldownOwner, (System.currentTimeMillis() + timeUnit.toMillis(length))));
+    }
+
+    /**
+     * Add a cooldown, replacing the one of the same type and owner
+     * @param cooldown the cooldown
+     */
+    private synchronized void addCooldown(Cooldown cooldown) {
+        if (cooldown.getCooldownExpiry() <= System.currentTimeMillis()) return;
+        CooldownWheel.Node node = new CooldownWheel.Node(cooldown);
+        CooldownWheel.Node old = cooldowns.get(cooldown.getCooldownType()).put(cooldown.getCooldownOwner(), node);
+        if (old != null) {
+            wheel.remove(old);
+        }
+        wheel.add(node);
+    }
+
+    private synchronized CooldownWheel.Node getActive(Cooldown.Type cooldownType, UUID cooldownOwner, long now) {
+        if (cooldownType == null) {
+            return null;
+        }
+        CooldownWheel.Node node = cooldowns.get(cooldownType).get(cooldownOwner);
+        return node != null && node.expiry > now ? node : null;
     }
 
-    private void addCooldown(Cooldown cooldown) {
-        long remainingSeconds = cooldown.getCooldownExpiry() - System.currentTimeMillis();
-        if (remainingSeconds < 0) return;
-        cooldowns.put(cooldown.getCooldownId(), cooldown, ExpirationPolicy.CREATED, TimeUnit.MILLISECONDS.toSeconds(remainingSeconds), TimeUnit.SECONDS);
+    /**
+     * Remove a cooldown before it runs out
+     * @param cooldownType the cooldown type
+     * @param cooldownOwner the owner UUID of the cooldown
+     * @return the removed cooldown, or null if there was none
+     */
+    public synchronized Cooldown removeCooldown(@NotNull Cooldown.Type cooldownType, @NotNull UUID cooldownOwner) {
+        CooldownWheel.Node node = cooldowns.get(cooldownType).remove(cooldownOwner);
+        if (node == null) {
+            return null;
+        }
+        wheel.remove(node);
+        return node.cooldown;
+    }
+
+    /**
+     * Get every cooldown that hasn't run out yet
+     * @return cooldown id -> cooldown, a copy
+     */
+    public synchronized Map<UUID, Cooldown> getActiveCooldowns() {
+        long now = System.currentTimeMillis();
+        Map<UUID, Cooldown> active = new LinkedHashMap<>(wheel.size());
+        for (Map<UUID, CooldownWheel.Node> owners : cooldowns.values()) {
+            for (CooldownWheel.Node node : owners.values()) {
+                if (node.expiry > now) {
+                    active.put(node.cooldown.getCooldownId(), node.cooldown);
+                }
+            }
+        }
+        return active;
     }
 
-    public ExpiringMap<UUID, Cooldown> getCooldowns() {
-        return cooldowns;
+    /**
+     * Get every cooldown that hasn't run out yet
+     * @return cooldown id -> cooldown, a copy, so changing it doesn't change the cooldowns
+     * @deprecated cooldowns are no longer kept in an expiring map, use {@link #getActiveCooldowns()} to read them
+     * and {@link #removeCooldown(Cooldown.Type, UUID)} to remove one
+     */
+    @Deprecated
+    public Map<UUID, Cooldown> getCooldowns() {
+        return getActiveCooldowns();
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.cooldowns;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel for cooldown expiry. Each level has 64 slots, a slot on the first level is one tick and a
+ * slot on every next level covers a whole turn of the level below. Adding and removing a cooldown is constant time, and
+ * advancing the wheel by one tick only touches the cooldowns due in that tick, plus a cascade of one higher slot every
+ * 64 ticks. Cooldowns further out than the wheel reaches wait in the last level and are placed again when they come round.
+ */
+final class CooldownWheel {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tick;
+    private final Node[][] slots = new Node[LEVELS][SLOTS];
+    private long current;
+    private int size;
+
+    /**
+     * @param tick the length of a tick in milliseconds
+     * @param now the current time in milliseconds
+     */
+    CooldownWheel(long tick, long now) {
+        this.tick = tick;
+        this.current = now / tick;
+    }
+
+    /**
+     * Schedule a node to expire at it's expiry
+     * @param node a node that isn't in the wheel yet
+     */
+    void add(Node node) {
+        // The slot of the current tick has already been handled
+        place(node, current + 1);
+        size++;
+    }
+
+    /**
+     * Take a node out of the wheel
+     * @param node a node in the wheel
+     */
+    void remove(Node node) {
+        if (node.level < 0) return;
+        unlink(node);
+        size--;
+    }
+
+    /**
+     * Move the wheel up to the current time, handing every expired node to the consumer
+     * @param now the current time in milliseconds
+     * @param expired gets every node whose expiry has passed, already taken out of the wheel
+     */
+    void advance(long now, Consumer<Node> expired) {
+        long target = now / tick;
+        while (current < target) {
+            current++;
+            for (int level = 1; level < LEVELS; level++) {
+                if ((current & ((1L << (BITS * level)) - 1)) != 0) break;
+                cascade(level, (int) ((current >> (BITS * level)) & MASK));
+            }
+            int slot = (int) (current & MASK);
+            Node node = slots[0][slot];
+            slots[0][slot] = null;
+            while (node != null) {
+                Node next = node.next;
+                node.clear();
+                if (node.expiry <= now) {
+                    size--;
+                    expired.accept(node);
+                } else {
+                    place(node, current + 1);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Get how many nodes are scheduled
+     * @return node count
+     */
+    int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        Node node = slots[level][slot];
+        slots[level][slot] = null;
+        while (node != null) {
+            Node next = node.next;
+            node.clear();
+            // Due this tick means the first level slot that is handled right after the cascade
+            place(node, current);
+            node = next;
+        }
+    }
+
+    private void place(Node node, long earliest) {
+        long expires = Math.max((node.expiry + tick - 1) / tick, earliest);
+        long delta = Math.min(expires - current, MAX_DELTA);
+        expires = current + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((expires >> (BITS * level)) & MASK);
+        node.level = level;
+        node.slot = slot;
+        node.prev = null;
+        node.next = slots[level][slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[level][slot] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            slots[node.level][node.slot] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.clear();
+    }
+
+    /**
+     * A cooldown in the wheel, linked into the list of it's slot
+     */
+    static final class Node {
+        final Cooldown cooldown;
+        final long expiry;
+        private Node prev;
+        private Node next;
+        private int level = -1;
+        private int slot;
+
+        Node(Cooldown cooldown) {
+            this.cooldown = cooldown;
+            this.expiry = cooldown.getCooldownExpiry();
+        }
+
+        private void clear() {
+            prev = null;
+            next = null;
+            level = -1;
+        }
+    }
+}
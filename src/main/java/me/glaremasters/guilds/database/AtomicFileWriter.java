@@ -0,0 +1,158 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes files so a crash never leaves a half written or missing file behind.
+ * The data goes to a temp file next to the target which is synced and then renamed over the target.
+ * <p>
+ * Files written through one writer are only put in place by {@link #sync()}: every temp file is written first,
+ * then each is synced and renamed, then each directory is synced once. This lets the system flush the files
+ * in the background while the rest are still being written, but every file still costs one sync of it's own
+ * and every directory one more, since a file has to be on disk before it may replace the old one.
+ * <p>
+ * Temp files are named {@code <name>.<random>.tmp} so two writers never share one. A crash can leave them
+ * behind, {@link #deleteTemps(Path)} removes them.
+ */
+public final class AtomicFileWriter {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final List<Path[]> pending = new ArrayList<>();
+    private final Set<Path> directories = new LinkedHashSet<>();
+
+    /**
+     * Write a single file and put it in place right away
+     * @param target the file to write
+     * @param data the contents
+     * @throws IOException if it couldn't be written
+     */
+    public static void writeNow(@NotNull Path target, @NotNull byte[] data) throws IOException {
+        AtomicFileWriter writer = new AtomicFileWriter();
+        writer.write(target, data);
+        writer.sync();
+    }
+
+    /**
+     * Delete the temp files a crash left behind in a directory
+     * @param directory the directory to clean
+     * @return how many were deleted
+     * @throws IOException if the directory couldn't be listed
+     */
+    public static int deleteTemps(@NotNull Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path temp : temps) {
+                if (Files.deleteIfExists(temp)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Write the contents of a file to a temp file. The target isn't replaced until {@link #sync()} is called.
+     * @param target the file to write
+     * @param data the contents
+     * @throws IOException if it couldn't be written
+     */
+    public void write(@NotNull Path target, @NotNull byte[] data) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        pending.add(new Path[]{temp, target});
+        directories.add(directory);
+    }
+
+    /**
+     * Sync every file written since the last call, rename them over their targets and sync their directories
+     * @throws IOException if a file couldn't be synced or renamed, the files before it are already in place
+     */
+    public void sync() throws IOException {
+        int moved = 0;
+        try {
+            for (Path[] file : pending) {
+                try (FileChannel channel = FileChannel.open(file[0], StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+                try {
+                    Files.move(file[0], file[1], StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(file[0], file[1], StandardCopyOption.REPLACE_EXISTING);
+                }
+                moved++;
+            }
+        } finally {
+            // Whatever wasn't put in place is dropped, the old files are still there
+            for (int i = moved; i < pending.size(); i++) {
+                try {
+                    Files.deleteIfExists(pending.get(i)[0]);
+                } catch (IOException ignored) {
+                    // Left for deleteTemps on the next start
+                }
+            }
+            pending.clear();
+            syncDirectories();
+        }
+    }
+
+    private void syncDirectories() {
+        for (Path directory : directories) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException ignored) {
+                // Not every platform allows opening a directory (Windows), the rename is still atomic there
+            }
+        }
+        directories.clear();
+    }
+}
@@ -82,6 +82,9 @@ public final class DatabaseAdapter implements AutoCloseable {
 
     @Override
     public void close() {
+        if (guildAdapter != null) {
+            guildAdapter.close();
+        }
         if (databaseManager != null && databaseManager.isConnected()) {
             // TODO: do you want to save the guilds here?
             databaseManager.getHikari().close();
@@ -112,6 +115,10 @@ public final class DatabaseAdapter implements AutoCloseable {
         return databaseManager;
     }
 
+    public SettingsManager getSettings() {
+        return settings;
+    }
+
     public String getSqlTablePrefix() {
         return sqlTablePrefix;
     }
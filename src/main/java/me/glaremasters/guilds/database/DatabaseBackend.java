@@ -40,27 +40,33 @@ import me.glaremasters.guilds.database.cooldowns.provider.CooldownMariaDBProvide
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownMySQLProvider;
 import me.glaremasters.guilds.database.cooldowns.provider.CooldownSQLiteProvider;
 import me.glaremasters.guilds.database.guild.GuildProvider;
+import me.glaremasters.guilds.database.guild.NormalizedGuildProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildJsonProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildMariaDBNormalizedProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildMariaDBProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildMySQLNormalizedProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildMySQLProvider;
+import me.glaremasters.guilds.database.guild.provider.GuildSQLiteNormalizedProvider;
 import me.glaremasters.guilds.database.guild.provider.GuildSQLiteProvider;
 
 import java.util.Arrays;
 
 public enum DatabaseBackend {
-    JSON("json", GuildJsonProvider.class, ChallengeJsonProvider.class, ArenaJsonProvider.class, CooldownJsonProvider.class),
-    MYSQL("mysql", GuildMySQLProvider.class, ChallengeMySQLProvider.class, ArenaMySQLProvider.class, CooldownMySQLProvider.class),
-    SQLITE("sqlite", GuildSQLiteProvider.class, ChallengeSQLiteProvider.class, ArenaSQLiteProvider.class, CooldownSQLiteProvider.class),
-    MARIADB("mariadb", GuildMariaDBProvider.class, ChallengeMariaDBProvider.class, ArenaMariaDBProvider.class, CooldownMariaDBProvider.class);
+    JSON("json", GuildJsonProvider.class, null, ChallengeJsonProvider.class, ArenaJsonProvider.class, CooldownJsonProvider.class),
+    MYSQL("mysql", GuildMySQLProvider.class, GuildMySQLNormalizedProvider.class, ChallengeMySQLProvider.class, ArenaMySQLProvider.class, CooldownMySQLProvider.class),
+    SQLITE("sqlite", GuildSQLiteProvider.class, GuildSQLiteNormalizedProvider.class, ChallengeSQLiteProvider.class, ArenaSQLiteProvider.class, CooldownSQLiteProvider.class),
+    MARIADB("mariadb", GuildMariaDBProvider.class, GuildMariaDBNormalizedProvider.class, ChallengeMariaDBProvider.class, ArenaMariaDBProvider.class, CooldownMariaDBProvider.class);
     private final String backendName;
     private final Class<? extends GuildProvider> guildProvider;
+    private final Class<? extends NormalizedGuildProvider> normalizedGuildProvider;
     private final Class<? extends ChallengeProvider> challengeProvider;
     private final Class<? extends ArenaProvider> arenaProvider;
     private final Class<? extends CooldownProvider> cooldownProvider;
 
-    DatabaseBackend(String backendName, Class<? extends GuildProvider> guildProvider, Class<? extends ChallengeProvider> challengeProvider, Class<? extends ArenaProvider> arenaProvider, Class<? extends CooldownProvider> cooldownProvider) {
+    DatabaseBackend(String backendName, Class<? extends GuildProvider> guildProvider, Class<? extends NormalizedGuildProvider> normalizedGuildProvider, Class<? extends ChallengeProvider> challengeProvider, Class<? extends ArenaProvider> arenaProvider, Class<? extends CooldownProvider> cooldownProvider) {
         this.backendName = backendName;
         this.guildProvider = guildProvider;
+        this.normalizedGuildProvider = normalizedGuildProvider;
         this.challengeProvider = challengeProvider;
         this.arenaProvider = arenaProvider;
         this.cooldownProvider = cooldownProvider;
@@ -74,6 +80,14 @@ public enum DatabaseBackend {
         return guildProvider;
     }
 
+    /**
+     * Get the provider that stores guilds in separate tables instead of a json column
+     * @return the provider or null if the backend doesn't have one
+     */
+    public Class<? extends NormalizedGuildProvider> getNormalizedGuildProvider() {
+        return normalizedGuildProvider;
+    }
+
     public Class<? extends ChallengeProvider> getChallengeProvider() {
         return challengeProvider;
     }
@@ -0,0 +1,234 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database;
+
+import com.google.gson.reflect.TypeToken;
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File layout shared by the json providers.
+ * Every object is stored at {@code <folder>/<first two characters of the id>/<id>.json} so no single
+ * directory grows too large, and the ids that exist are kept in memory and in {@code manifest.json}
+ * so lookups never have to list the directory.
+ * <p>
+ * The manifest is always written before a new file and after a deleted one, so it may name an id
+ * without a file after a crash but never the other way around.
+ */
+public class JsonFileStore {
+    private static final String MANIFEST = "manifest.json";
+
+    private final File dataFolder;
+    private final File manifest;
+    private final Set<String> ids = ConcurrentHashMap.newKeySet();
+    private volatile boolean opened;
+
+    public JsonFileStore(@NotNull File dataFolder) {
+        this.dataFolder = dataFolder;
+        this.manifest = new File(dataFolder, MANIFEST);
+    }
+
+    /**
+     * Create the folder, delete temp files left by a crash, move any files from the old flat layout into their shard
+     * and load the manifest.
+     * If the manifest is missing or unreadable it's rebuilt from the files on disk.
+     * @throws IOException if the folder couldn't be prepared
+     */
+    public synchronized void open() throws IOException {
+        if (opened) return;
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+
+        boolean rebuild = !manifest.exists();
+        if (!rebuild) {
+            try (Reader reader = new InputStreamReader(Files.newInputStream(manifest.toPath()), StandardCharsets.UTF_8)) {
+                List<String> stored = Guilds.getStorageGson().fromJson(reader, new TypeToken<List<String>>() {}.getType());
+                if (stored != null) {
+                    ids.addAll(stored);
+                } else {
+                    rebuild = true;
+                }
+            } catch (Exception ex) {
+                LoggingUtils.warn("The manifest in " + dataFolder.getAbsolutePath() + " couldn't be read, it will be rebuilt from the data files.");
+                rebuild = true;
+            }
+        }
+
+        // Temp files of writes that never finished, the files they were meant to replace are still intact
+        int temps = AtomicFileWriter.deleteTemps(dataFolder.toPath());
+        File[] files = dataFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    temps += AtomicFileWriter.deleteTemps(file.toPath());
+                }
+                if (file.isFile() && file.getName().endsWith(".json") && !file.equals(manifest)) {
+                    // Old flat layout, move it into it's shard
+                    String id = file.getName().substring(0, file.getName().length() - 5);
+                    File target = getFile(id);
+                    target.getParentFile().mkdirs();
+                    Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    ids.add(id);
+                    rebuild = true;
+                } else if (rebuild && file.isDirectory()) {
+                    File[] shard = file.listFiles((dir, name) -> name.endsWith(".json"));
+                    if (shard == null) continue;
+                    for (File data : shard) {
+                        ids.add(data.getName().substring(0, data.getName().length() - 5));
+                    }
+                }
+            }
+        }
+
+        if (temps > 0) {
+            LoggingUtils.info("Removed " + temps + " unfinished writes from " + dataFolder.getAbsolutePath() + ".");
+        }
+
+        opened = true;
+        if (rebuild) {
+            saveManifest();
+        }
+    }
+
+    /**
+     * Check if an object with the id is stored
+     * @param id the id
+     * @return stored or not
+     * @throws IOException if the store couldn't be opened
+     */
+    public boolean exists(@NotNull String id) throws IOException {
+        open();
+        return ids.contains(id);
+    }
+
+    /**
+     * Get the ids of every stored object
+     * @return copy of the stored ids
+     * @throws IOException if the store couldn't be opened
+     */
+    public List<String> getIds() throws IOException {
+        open();
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Get the file an id is stored in, whether it exists or not
+     * @param id the id
+     * @return the file
+     */
+    public File getFile(@NotNull String id) {
+        String shard = id.length() >= 2 ? id.substring(0, 2).toLowerCase() : "_";
+        return new File(new File(dataFolder, shard), id + ".json");
+    }
+
+    /**
+     * Write an object to it's file
+     * @param id the id of the object
+     * @param data the json of the object
+     * @throws IOException if it couldn't be written
+     */
+    public void write(@NotNull String id, @NotNull String data) throws IOException {
+        open();
+        if (ids.add(id)) {
+            saveManifest();
+        }
+        AtomicFileWriter.writeNow(getFile(id).toPath(), data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write many objects, updating the manifest once and syncing the files together, see {@link AtomicFileWriter}
+     * @param ids the ids of the objects
+     * @param data the json of each object, in the same order as the ids
+     * @throws IOException if they couldn't be written
+     */
+    public void writeAll(@NotNull List<String> ids, @NotNull List<String> data) throws IOException {
+        open();
+        boolean added = false;
+        for (String id : ids) {
+            added |= this.ids.add(id);
+        }
+        if (added) {
+            saveManifest();
+        }
+        AtomicFileWriter writer = new AtomicFileWriter();
+        for (int i = 0; i < ids.size(); i++) {
+            writer.write(getFile(ids.get(i)).toPath(), data.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        writer.sync();
+    }
+
+    /**
+     * Delete an object
+     * @param id the id of the object
+     * @throws IOException if the manifest couldn't be updated
+     */
+    public void delete(@NotNull String id) throws IOException {
+        open();
+        deleteFile(id);
+        if (ids.remove(id)) {
+            saveManifest();
+        }
+    }
+
+    /**
+     * Delete many objects, updating the manifest once
+     * @param ids the ids of the objects
+     * @throws IOException if the manifest couldn't be updated
+     */
+    public void deleteAll(@NotNull List<String> ids) throws IOException {
+        open();
+        boolean removed = false;
+        for (String id : ids) {
+            deleteFile(id);
+            removed |= this.ids.remove(id);
+        }
+        if (removed) {
+            saveManifest();
+        }
+    }
+
+    private void deleteFile(String id) {
+        File file = getFile(id);
+        if (file.exists()) file.delete();
+    }
+
+    private synchronized void saveManifest() throws IOException {
+        AtomicFileWriter.writeNow(manifest.toPath(), Guilds.getStorageGson().toJson(new ArrayList<>(ids)).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Stores a cooldown with its type written by enum name, the same way Gson wrote it before.
+ */
+public class CooldownTypeAdapter extends TypeAdapter<Cooldown> {
+
+    @Override
+    public void write(JsonWriter out, Cooldown cooldown) throws IOException {
+        if (cooldown == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("cooldownId").value(cooldown.getCooldownId().toString());
+        out.name("cooldownType").value(cooldown.getCooldownType().name());
+        out.name("cooldownOwner").value(cooldown.getCooldownOwner().toString());
+        out.name("cooldownExpiry").value(cooldown.getCooldownExpiry());
+        out.endObject();
+    }
+
+    @Override
+    public Cooldown read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        UUID id = null;
+        Cooldown.Type type = null;
+        UUID owner = null;
+        Long expiry = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            switch (name) {
+                case "cooldownId":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "cooldownType":
+                    type = Cooldown.Type.valueOf(in.nextString());
+                    break;
+                case "cooldownOwner":
+                    owner = UUID.fromString(in.nextString());
+                    break;
+                case "cooldownExpiry":
+                    expiry = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new Cooldown(id == null ? UUID.randomUUID() : id, type, owner, expiry);
+    }
+}
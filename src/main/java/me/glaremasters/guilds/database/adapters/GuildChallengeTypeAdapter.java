@@ -0,0 +1,142 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.challenges.adapters.WarArenaChallengeAdapter;
+import me.glaremasters.guilds.challenges.adapters.WarGuildChallengeAdapter;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildChallenge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores a finished or running war. Guilds and the arena are written as references
+ * with the existing challenge adapters, runtime state is not stored.
+ */
+public class GuildChallengeTypeAdapter extends TypeAdapter<GuildChallenge> {
+    private final WarGuildChallengeAdapter guildAdapter = new WarGuildChallengeAdapter();
+    private final WarArenaChallengeAdapter arenaAdapter = new WarArenaChallengeAdapter();
+
+    @Override
+    public void write(JsonWriter out, GuildChallenge challenge) throws IOException {
+        if (challenge == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(challenge.getId().toString());
+        out.name("initiateTime").value(challenge.getInitiateTime());
+        writeGuild(out, "challenger", challenge.getChallenger());
+        writeGuild(out, "defender", challenge.getDefender());
+        out.name("isCompleted").value(challenge.isCompleted());
+        JsonStreams.writeUuids(out, "challengePlayers", challenge.getChallengePlayers());
+        JsonStreams.writeUuids(out, "defendPlayers", challenge.getDefendPlayers());
+        out.name("arena");
+        arenaAdapter.write(out, challenge.getArena());
+        writeGuild(out, "winner", challenge.getWinner());
+        writeGuild(out, "loser", challenge.getLoser());
+        out.endObject();
+    }
+
+    private void writeGuild(JsonWriter out, String name, Guild guild) throws IOException {
+        if (guild == null) {
+            return;
+        }
+        out.name(name);
+        guildAdapter.write(out, guild);
+    }
+
+    @Override
+    public GuildChallenge read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        UUID id = null;
+        long initiateTime = 0;
+        Guild challenger = null;
+        Guild defender = null;
+        boolean completed = false;
+        List<UUID> challengePlayers = null;
+        List<UUID> defendPlayers = null;
+        Arena arena = null;
+        Guild winner = null;
+        Guild loser = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "initiateTime":
+                    initiateTime = in.nextLong();
+                    break;
+                case "challenger":
+                    challenger = guildAdapter.read(in);
+                    break;
+                case "defender":
+                    defender = guildAdapter.read(in);
+                    break;
+                case "isCompleted":
+                    completed = in.nextBoolean();
+                    break;
+                case "challengePlayers":
+                    challengePlayers = JsonStreams.readUuids(in);
+                    break;
+                case "defendPlayers":
+                    defendPlayers = JsonStreams.readUuids(in);
+                    break;
+                case "arena":
+                    arena = arenaAdapter.read(in);
+                    break;
+                case "winner":
+                    winner = guildAdapter.read(in);
+                    break;
+                case "loser":
+                    loser = guildAdapter.read(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new GuildChallenge(id, initiateTime, challenger, defender, false, false, false, completed, 0, 0,
+                challengePlayers == null ? new ArrayList<>() : challengePlayers,
+                defendPlayers == null ? new ArrayList<>() : defendPlayers,
+                arena, winner, loser, new HashMap<>(), new HashMap<>());
+    }
+}
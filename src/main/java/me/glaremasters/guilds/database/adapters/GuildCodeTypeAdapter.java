@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.guild.GuildCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores an invite code with its uses, creator and the players who redeemed it.
+ */
+public class GuildCodeTypeAdapter extends TypeAdapter<GuildCode> {
+
+    @Override
+    public void write(JsonWriter out, GuildCode code) throws IOException {
+        if (code == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(code.getId());
+        out.name("uses").value(code.getUses());
+        out.name("creator").value(code.getCreator().toString());
+        JsonStreams.writeUuids(out, "redeemers", code.getRedeemers());
+        out.endObject();
+    }
+
+    @Override
+    public GuildCode read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        String id = null;
+        int uses = 0;
+        UUID creator = null;
+        List<UUID> redeemers = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "uses":
+                    uses = in.nextInt();
+                    break;
+                case "creator":
+                    creator = UUID.fromString(in.nextString());
+                    break;
+                case "redeemers":
+                    redeemers = JsonStreams.readUuids(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new GuildCode(id, uses, creator, redeemers == null ? new ArrayList<>() : redeemers);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.guild.GuildHome;
+
+import java.io.IOException;
+
+/**
+ * Stores a guild home as its world name and coordinates.
+ */
+public class GuildHomeTypeAdapter extends TypeAdapter<GuildHome> {
+
+    @Override
+    public void write(JsonWriter out, GuildHome home) throws IOException {
+        if (home == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("world").value(home.getWorld());
+        out.name("x").value(home.getX());
+        out.name("y").value(home.getY());
+        out.name("z").value(home.getZ());
+        out.name("yaw").value((Number) home.getYaw());
+        out.name("pitch").value((Number) home.getPitch());
+        out.endObject();
+    }
+
+    @Override
+    public GuildHome read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        String world = null;
+        double x = 0;
+        double y = 0;
+        double z = 0;
+        float yaw = 0;
+        float pitch = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            switch (name) {
+                case "world":
+                    world = in.nextString();
+                    break;
+                case "x":
+                    x = in.nextDouble();
+                    break;
+                case "y":
+                    y = in.nextDouble();
+                    break;
+                case "z":
+                    z = in.nextDouble();
+                    break;
+                case "yaw":
+                    yaw = (float) in.nextDouble();
+                    break;
+                case "pitch":
+                    pitch = (float) in.nextDouble();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new GuildHome(world, x, y, z, yaw, pitch);
+    }
+}
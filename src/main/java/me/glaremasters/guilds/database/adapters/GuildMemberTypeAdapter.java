@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildRole;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Stores a guild member as its uuid, role level, join date and last login.
+ * The role only keeps its level, the real role is bound again when the guild is loaded.
+ */
+public class GuildMemberTypeAdapter extends TypeAdapter<GuildMember> {
+
+    @Override
+    public void write(JsonWriter out, GuildMember member) throws IOException {
+        if (member == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uuid").value(member.getUuid().toString());
+        JsonStreams.writeLevel(out, "role", member.getRole().getLevel());
+        out.name("joinDate").value(member.getJoinDate());
+        out.name("lastLogin").value(member.getLastLogin());
+        out.endObject();
+    }
+
+    @Override
+    public GuildMember read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        UUID uuid = null;
+        int level = 0;
+        long joinDate = 0;
+        long lastLogin = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            switch (name) {
+                case "uuid":
+                    uuid = UUID.fromString(in.nextString());
+                    break;
+                case "role":
+                    level = JsonStreams.readLevel(in);
+                    break;
+                case "joinDate":
+                    joinDate = in.nextLong();
+                    break;
+                case "lastLogin":
+                    lastLogin = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        GuildMember member = new GuildMember(uuid, new GuildRole("", "", level));
+        member.setJoinDate(joinDate);
+        member.setLastLogin(lastLogin);
+        return member;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.guild.GuildSkull;
+
+import java.io.IOException;
+
+/**
+ * Stores a guild skull as its serialized texture, the item stack is built when needed.
+ */
+public class GuildSkullTypeAdapter extends TypeAdapter<GuildSkull> {
+
+    @Override
+    public void write(JsonWriter out, GuildSkull skull) throws IOException {
+        if (skull == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("serialized").value(skull.getSerialized());
+        out.endObject();
+    }
+
+    @Override
+    public GuildSkull read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        String serialized = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("serialized")) {
+                serialized = JsonStreams.readString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return GuildSkull.fromSerialized(serialized);
+    }
+}
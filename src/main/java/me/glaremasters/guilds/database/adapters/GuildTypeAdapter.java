@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildCode;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildTier;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a guild field by field without going through reflection.
+ * Field names match what the reflective Gson wrote, so existing files and rows read the same,
+ * and unknown fields are skipped.
+ */
+public class GuildTypeAdapter extends TypeAdapter<Guild> {
+    private final GuildMemberTypeAdapter memberAdapter;
+    private final GuildHomeTypeAdapter homeAdapter;
+    private final GuildSkullTypeAdapter skullAdapter;
+    private final GuildScoreTypeAdapter scoreAdapter;
+    private final GuildCodeTypeAdapter codeAdapter;
+
+    public GuildTypeAdapter(GuildMemberTypeAdapter memberAdapter, GuildHomeTypeAdapter homeAdapter, GuildSkullTypeAdapter skullAdapter, GuildScoreTypeAdapter scoreAdapter, GuildCodeTypeAdapter codeAdapter) {
+        this.memberAdapter = memberAdapter;
+        this.homeAdapter = homeAdapter;
+        this.skullAdapter = skullAdapter;
+        this.scoreAdapter = scoreAdapter;
+        this.codeAdapter = codeAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Guild guild) throws IOException {
+        if (guild == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(guild.getId().toString());
+        out.name("name").value(guild.getName());
+        out.name("prefix").value(guild.getPrefix());
+        out.name("motd").value(guild.getMotd());
+        if (guild.getGuildMaster() != null) {
+            out.name("guildMaster");
+            memberAdapter.write(out, guild.getGuildMaster());
+        }
+        if (guild.getHome() != null) {
+            out.name("home");
+            homeAdapter.write(out, guild.getHome());
+        }
+        if (guild.getGuildSkull() != null) {
+            out.name("guildSkull");
+            skullAdapter.write(out, guild.getGuildSkull());
+        }
+        if (guild.getStatus() != null) {
+            out.name("status").value(guild.getStatus().name());
+        }
+        if (guild.getTier() != null) {
+            JsonStreams.writeLevel(out, "tier", guild.getTier().getLevel());
+        }
+        out.name("guildScore");
+        scoreAdapter.write(out, guild.getGuildScore());
+        out.name("balance").value(guild.getBalance());
+        out.name("members").beginArray();
+        for (GuildMember member : guild.getMembers()) {
+            memberAdapter.write(out, member);
+        }
+        out.endArray();
+        JsonStreams.writeUuids(out, "invitedMembers", guild.getInvitedMembers());
+        JsonStreams.writeUuids(out, "allies", guild.getAllies());
+        JsonStreams.writeUuids(out, "pendingAllies", guild.getPendingAllies());
+        out.name("codes").beginArray();
+        for (GuildCode code : guild.getCodes()) {
+            codeAdapter.write(out, code);
+        }
+        out.endArray();
+        JsonStreams.writeStrings(out, "vaults", guild.getVaults());
+        out.name("lastDefended").value(guild.getLastDefended());
+        out.name("creationDate").value(guild.getCreationDate());
+        out.endObject();
+    }
+
+    @Override
+    public Guild read(JsonReader in) throws IOException {
+        if (JsonStreams.skipNull(in)) {
+            return null;
+        }
+        Guild.GuildBuilder builder = Guild.builder();
+        long creationDate = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    builder.id(JsonStreams.readUuid(in));
+                    break;
+                case "name":
+                    builder.name(in.nextString());
+                    break;
+                case "prefix":
+                    builder.prefix(in.nextString());
+                    break;
+                case "motd":
+                    builder.motd(in.nextString());
+                    break;
+                case "guildMaster":
+                    builder.guildMaster(memberAdapter.read(in));
+                    break;
+                case "home":
+                    builder.home(homeAdapter.read(in));
+                    break;
+                case "guildSkull":
+                    builder.guildSkull(skullAdapter.read(in));
+                    break;
+                case "status":
+                    builder.status(Guild.Status.valueOf(in.nextString()));
+                    break;
+                case "tier":
+                    builder.tier(GuildTier.builder().level(JsonStreams.readLevel(in)).build());
+                    break;
+                case "guildScore":
+                    builder.guildScore(scoreAdapter.read(in));
+                    break;
+                case "balance":
+                    builder.balance(in.nextDouble());
+                    break;
+                case "members":
+                    List<GuildMember> members = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        members.add(memberAdapter.read(in));
+                    }
+                    in.endArray();
+                    builder.members(members);
+                    break;
+                case "invitedMembers":
+                    builder.invitedMembers(JsonStreams.readUuids(in));
+                    break;
+                case "allies":
+                    builder.allies(JsonStreams.readUuids(in));
+                    break;
+                case "pendingAllies":
+                    builder.pendingAllies(JsonStreams.readUuids(in));
+                    break;
+                case "codes":
+                    List<GuildCode> codes = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        codes.add(codeAdapter.read(in));
+                    }
+                    in.endArray();
+                    builder.codes(codes);
+                    break;
+                case "vaults":
+                    builder.vaults(JsonStreams.readStrings(in));
+                    break;
+                case "lastDefended":
+                    builder.lastDefended(in.nextLong());
+                    break;
+                case "creationDate":
+                    creationDate = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        Guild guild = builder.build();
+        guild.setCreationDate(creationDate);
+        // Nothing has changed since this was stored
+        guild.markClean();
+        return guild;
+    }
+}
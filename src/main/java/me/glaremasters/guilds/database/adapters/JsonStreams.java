@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Small read/write helpers shared by the storage type adapters.
+ * Values are read the same way Gson's reflective adapters wrote them, so old data stays readable.
+ */
+final class JsonStreams {
+
+    private JsonStreams() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Check for a JSON null and consume it
+     * @param in the reader
+     * @return true if the next value was null
+     */
+    static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+
+    static UUID readUuid(JsonReader in) throws IOException {
+        String value = readString(in);
+        return value == null ? null : UUID.fromString(value);
+    }
+
+    static List<UUID> readUuids(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        List<UUID> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readUuid(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static List<String> readStrings(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        List<String> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readString(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    /**
+     * Read the level out of a stored tier or role, which only keep their level
+     * @param in the reader
+     * @return the level, or 0 when missing
+     */
+    static int readLevel(JsonReader in) throws IOException {
+        int level = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("level") && !skipNull(in)) {
+                level = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return level;
+    }
+
+    static void writeLevel(JsonWriter out, String name, int level) throws IOException {
+        out.name(name).beginObject().name("level").value(level).endObject();
+    }
+
+    static void writeUuids(JsonWriter out, String name, List<UUID> uuids) throws IOException {
+        if (uuids == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (UUID uuid : uuids) {
+            out.value(uuid == null ? null : uuid.toString());
+        }
+        out.endArray();
+    }
+
+    static void writeStrings(JsonWriter out, String name, List<String> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (String value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+}
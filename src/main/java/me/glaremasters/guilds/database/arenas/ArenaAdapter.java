@@ -100,11 +100,11 @@ public class ArenaAdapter {
     }
 
     public void createArena(@NotNull Arena arena) throws IOException {
-        provider.createArena(sqlTablePrefix, arena.getId().toString(), Guilds.getGson().toJson(arena, Arena.class));
+        provider.createArena(sqlTablePrefix, arena.getId().toString(), Guilds.getStorageGson().toJson(arena, Arena.class));
     }
 
     public void updateArena(@NotNull Arena arena) throws IOException {
-        provider.updateArena(sqlTablePrefix, arena.getId().toString(), Guilds.getGson().toJson(arena, Arena.class));
+        provider.updateArena(sqlTablePrefix, arena.getId().toString(), Guilds.getStorageGson().toJson(arena, Arena.class));
     }
 
     public void deleteArena(@NotNull String id) throws IOException {
@@ -35,6 +35,6 @@ import java.sql.SQLException;
 public class ArenaRowMapper implements RowMapper<Arena> {
     @Override
     public Arena map(ResultSet rs, StatementContext ctx) throws SQLException {
-        return Guilds.getGson().fromJson(rs.getString("data"), Arena.class);
+        return Guilds.getStorageGson().fromJson(rs.getString("data"), Arena.class);
     }
 }
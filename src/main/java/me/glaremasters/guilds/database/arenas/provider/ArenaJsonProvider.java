@@ -27,6 +27,7 @@ package me.glaremasters.guilds.database.arenas.provider;
 import com.google.gson.Gson;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.database.JsonFileStore;
 import me.glaremasters.guilds.database.arenas.ArenaProvider;
 import me.glaremasters.guilds.utils.LoggingUtils;
 import org.jetbrains.annotations.NotNull;
@@ -36,55 +37,44 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 
 public class ArenaJsonProvider implements ArenaProvider {
-    private final File dataFolder;
+    private final JsonFileStore store;
     private Gson gson;
 
     public ArenaJsonProvider(File dataFolder) {
-        this.dataFolder = dataFolder;
-        this.gson = Guilds.getGson();
+        this.store = new JsonFileStore(dataFolder);
+        this.gson = Guilds.getStorageGson();
     }
 
     @Override
     public void createContainer(@Nullable String tablePrefix) throws IOException {
-        if (!this.dataFolder.exists()) {
-            this.dataFolder.mkdir();
-        }
+        store.open();
     }
 
     @Override
     public boolean arenaExists(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        return Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .map(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()))
-                .anyMatch(n -> n.equals(id));
+        return store.exists(id);
     }
 
     @Override
     public List<String> getAllArenaIds(@Nullable String tablePrefix) throws IOException {
-        List<String> loadedArenaIds = new ArrayList<>();
-
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            loadedArenaIds.add(com.google.common.io.Files.getNameWithoutExtension(file.getName()));
-        }
-
-        return loadedArenaIds;
+        return store.getIds();
     }
 
     @Override
     public List<Arena> getAllArenas(@Nullable String tablePrefix) throws IOException {
         List<Arena> loadedArenas = new ArrayList<>();
 
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            try {
-                Arena arena = gson.fromJson(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), Arena.class);
+        for (String id : store.getIds()) {
+            File file = store.getFile(id);
+            if (!file.exists()) continue;
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                Arena arena = gson.fromJson(reader, Arena.class);
                 arena.getId();
                 loadedArenas.add(arena);
             } catch (Exception ex) {
@@ -98,39 +88,29 @@ public class ArenaJsonProvider implements ArenaProvider {
 
     @Override
     public Arena getArena(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        File data = Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .filter(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()).equals(id))
-                .findFirst()
-                .orElse(null);
+        if (!store.exists(id)) return null;
 
-        if (data == null) return null;
+        File data = store.getFile(id);
+        if (!data.exists()) return null;
 
-        return gson.fromJson(new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8), Arena.class);
+        try (Reader reader = new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Arena.class);
+        }
     }
 
     @Override
     public void createArena(@Nullable String tablePrefix, String id, String data) throws IOException {
         if (arenaExists(tablePrefix, id)) return;
-        writeArenaFile(new File(dataFolder, id + ".json"), data);
+        store.write(id, data);
     }
 
     @Override
     public void updateArena(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
-        File file = new File(dataFolder, id + ".json");
-        deleteArena(file);
-        writeArenaFile(file, data);
-    }
-
-    private void writeArenaFile(File file, String data) throws IOException {
-        Files.write(Paths.get(file.getPath()), data.getBytes(StandardCharsets.UTF_8));
+        store.write(id, data);
     }
 
     @Override
     public void deleteArena(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        deleteArena(new File(dataFolder, id + ".json"));
-    }
-
-    private void deleteArena(File file) {
-        if (file.exists()) file.delete();
+        store.delete(id);
     }
 }
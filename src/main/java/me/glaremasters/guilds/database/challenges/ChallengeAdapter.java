@@ -87,11 +87,11 @@ public class ChallengeAdapter {
    }
 
    public void createChallenge(@NotNull GuildChallenge challenge) throws IOException {
-        provider.createChallenge(sqlTablePrefix, challenge.getId().toString(), Guilds.getGson().toJson(challenge, GuildChallenge.class));
+        provider.createChallenge(sqlTablePrefix, challenge.getId().toString(), Guilds.getStorageGson().toJson(challenge, GuildChallenge.class));
    }
 
     public void updateChallenge(@NotNull GuildChallenge challenge) throws IOException {
-        provider.updateChallenge(sqlTablePrefix, challenge.getId().toString(), Guilds.getGson().toJson(challenge, GuildChallenge.class));
+        provider.updateChallenge(sqlTablePrefix, challenge.getId().toString(), Guilds.getStorageGson().toJson(challenge, GuildChallenge.class));
     }
 
    public void deleteChallenge(@NotNull String id) throws IOException {
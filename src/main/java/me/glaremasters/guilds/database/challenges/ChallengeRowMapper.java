@@ -35,6 +35,6 @@ import java.sql.SQLException;
 public class ChallengeRowMapper implements RowMapper<GuildChallenge> {
     @Override
     public GuildChallenge map(ResultSet rs, StatementContext ctx) throws SQLException {
-        return Guilds.getGson().fromJson(rs.getString("data"), GuildChallenge.class);
+        return Guilds.getStorageGson().fromJson(rs.getString("data"), GuildChallenge.class);
     }
 }
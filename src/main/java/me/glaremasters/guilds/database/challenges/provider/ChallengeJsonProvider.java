@@ -26,6 +26,7 @@ package me.glaremasters.guilds.database.challenges.provider;
 
 import com.google.gson.Gson;
 import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.JsonFileStore;
 import me.glaremasters.guilds.database.challenges.ChallengeProvider;
 import me.glaremasters.guilds.guild.GuildChallenge;
 import me.glaremasters.guilds.utils.LoggingUtils;
@@ -36,37 +37,34 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 
 public class ChallengeJsonProvider implements ChallengeProvider {
-    private final File dataFolder;
+    private final JsonFileStore store;
     private Gson gson;
 
     public ChallengeJsonProvider(File dataFolder) {
-        this.dataFolder = dataFolder;
-        this.gson = Guilds.getGson();
+        this.store = new JsonFileStore(dataFolder);
+        this.gson = Guilds.getStorageGson();
     }
 
     @Override
     public void createContainer(@Nullable String tablePrefix) throws IOException {
-        if (!this.dataFolder.exists()) {
-            this.dataFolder.mkdir();
-        }
+        store.open();
     }
 
     @Override
     public List<GuildChallenge> getAllChallenges(@Nullable String tablePrefix) throws IOException {
         List<GuildChallenge> loadedChallenges = new ArrayList<>();
 
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            try {
-                GuildChallenge challenge = gson.fromJson(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), GuildChallenge.class);
+        for (String id : store.getIds()) {
+            File file = store.getFile(id);
+            if (!file.exists()) continue;
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                GuildChallenge challenge = gson.fromJson(reader, GuildChallenge.class);
                 challenge.getId();
                 loadedChallenges.add(challenge);
             } catch (Exception ex) {
@@ -80,45 +78,33 @@ public class ChallengeJsonProvider implements ChallengeProvider {
 
     @Override
     public boolean challengeExists(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        return Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .map(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()))
-                .anyMatch(n -> n.equals(id));
+        return store.exists(id);
     }
 
     @Override
     public GuildChallenge getChallenge(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        File data = Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .filter(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()).equals(id))
-                .findFirst()
-                .orElse(null);
+        if (!store.exists(id)) return null;
 
-        if (data == null) return null;
+        File data = store.getFile(id);
+        if (!data.exists()) return null;
 
-        return gson.fromJson(new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8), GuildChallenge.class);
+        try (Reader reader = new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, GuildChallenge.class);
+        }
     }
 
     @Override
     public void createChallenge(@Nullable String tablePrefix, String id, String data) throws IOException {
-        writeChallengeFile(new File(dataFolder, id + ".json"), data);
+        store.write(id, data);
     }
 
     @Override
     public void updateChallenge(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
-        File file = new File(dataFolder, id + ".json");
-        deleteChallenge(file);
-        writeChallengeFile(file, data);
+        store.write(id, data);
     }
 
     @Override
     public void deleteChallenge(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        deleteChallenge(new File(dataFolder, id + ".json"));
-    }
-
-    private void writeChallengeFile(File file, String data) throws IOException {
-        Files.write(Paths.get(file.getPath()), data.getBytes(StandardCharsets.UTF_8));
-    }
-
-    private void deleteChallenge(File file) {
-        if (file.exists()) file.delete();
+        store.delete(id);
     }
 }
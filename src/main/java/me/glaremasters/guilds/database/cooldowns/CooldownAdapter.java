@@ -91,15 +91,16 @@ public class CooldownAdapter {
         provider.deleteCooldown(sqlTablePrefix, cooldownType.getTypeName(), cooldownOwner.toString());
     }
 
+    /**
+     * Write the cooldowns in a single pass, replacing stored cooldowns of the same type and owner
+     * and removing the ones that have expired
+     * @param cooldowns the cooldowns to save
+     */
     public void saveCooldowns(Collection<Cooldown> cooldowns) {
         try {
-            for (Cooldown cooldown : cooldowns) {
-                if (!cooldownExists(cooldown)) {
-                    createCooldown(cooldown);
-                }
-            }
-        } catch (IOException ex) {
-            LoggingUtils.warn("Failed to save cooldowns");
+            provider.saveCooldowns(sqlTablePrefix, cooldowns, new Timestamp(System.currentTimeMillis()));
+        } catch (IOException | RuntimeException ex) {
+            LoggingUtils.warn("Failed to save cooldowns: " + ex.getMessage());
         }
     }
 }
@@ -30,6 +30,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -89,4 +90,14 @@ public interface CooldownProvider {
      * @throws IOException
      */
     void deleteCooldown(@Nullable String tablePrefix, @NotNull String cooldownType, @NotNull String cooldownOwner) throws IOException;
+
+    /**
+     * Write many cooldowns at once, replacing any stored cooldown with the same type and owner,
+     * and remove every stored cooldown that has expired
+     * @param tablePrefix the table prefix
+     * @param cooldowns the cooldowns to write
+     * @param now the current time, cooldowns expiring before it are removed
+     * @throws IOException
+     */
+    void saveCooldowns(@Nullable String tablePrefix, @NotNull Collection<Cooldown> cooldowns, @NotNull Timestamp now) throws IOException;
 }
@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.cooldowns;
+
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The parts of the sql cooldown providers that don't depend on the database. Each database supplies the statements,
+ * the table has an index on (type, owner) since every lookup and delete goes by those two columns.
+ */
+public interface SqlCooldownProvider extends CooldownProvider {
+
+    void createTable(@Nullable String prefix);
+
+    void createIndex(@Nullable String prefix);
+
+    @Override
+    default void createContainer(@Nullable String prefix) {
+        createTable(prefix);
+        createIndex(prefix);
+    }
+
+    void deleteCooldowns(@Nullable String prefix, @NotNull List<String> types, @NotNull List<String> owners);
+
+    void insertCooldowns(@Nullable String prefix, @NotNull List<String> ids, @NotNull List<String> types, @NotNull List<String> owners, @NotNull List<Timestamp> expiries);
+
+    void deleteExpired(@Nullable String prefix, @NotNull Timestamp now);
+
+    @Override
+    @Transaction
+    default void saveCooldowns(@Nullable String prefix, @NotNull Collection<Cooldown> cooldowns, @NotNull Timestamp now) {
+        if (!cooldowns.isEmpty()) {
+            List<String> ids = new ArrayList<>(cooldowns.size());
+            List<String> types = new ArrayList<>(cooldowns.size());
+            List<String> owners = new ArrayList<>(cooldowns.size());
+            List<Timestamp> expiries = new ArrayList<>(cooldowns.size());
+            for (Cooldown cooldown : cooldowns) {
+                ids.add(cooldown.getCooldownId().toString());
+                types.add(cooldown.getCooldownType().getTypeName());
+                owners.add(cooldown.getCooldownOwner().toString());
+                expiries.add(new Timestamp(cooldown.getCooldownExpiry()));
+            }
+            deleteCooldowns(prefix, types, owners);
+            insertCooldowns(prefix, ids, types, owners, expiries);
+        }
+        deleteExpired(prefix, now);
+    }
+}
@@ -28,6 +28,7 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.database.AtomicFileWriter;
 import me.glaremasters.guilds.database.cooldowns.CooldownProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -36,13 +37,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CooldownJsonProvider implements CooldownProvider {
     private final File dataFolder;
@@ -53,7 +56,7 @@ public class CooldownJsonProvider implements CooldownProvider {
     public CooldownJsonProvider(File dataFolder) {
         this.dataFolder = dataFolder;
         this.cooldownFile = new File(dataFolder, "cooldowns.json");
-        this.gson = Guilds.getGson();
+        this.gson = Guilds.getStorageGson();
         this.cooldownCollectionType = new TypeToken<List<Cooldown>>(){}.getType(); // needed to serialize a list properly
     }
 
@@ -75,10 +78,10 @@ public class CooldownJsonProvider implements CooldownProvider {
 
     @Override
     public List<Cooldown> getAllCooldowns(@Nullable String tablePrefix) throws IOException {
-        List<Cooldown> loadedCooldowns = gson.fromJson(
-                new InputStreamReader(new FileInputStream(cooldownFile), StandardCharsets.UTF_8),
-                cooldownCollectionType
-        );
+        List<Cooldown> loadedCooldowns;
+        try (Reader reader = new InputStreamReader(new FileInputStream(cooldownFile), StandardCharsets.UTF_8)) {
+            loadedCooldowns = gson.fromJson(reader, cooldownCollectionType);
+        }
 
         return loadedCooldowns == null ? new ArrayList<>() : loadedCooldowns;
     }
@@ -99,8 +102,29 @@ public class CooldownJsonProvider implements CooldownProvider {
         writeCooldownFile(cooldownFile, current);
     }
 
+    @Override
+    public void saveCooldowns(@Nullable String tablePrefix, @NotNull Collection<Cooldown> cooldowns, @NotNull Timestamp now) throws IOException {
+        // Read and written once, keyed by type and owner so the new cooldowns replace the stored ones
+        Map<String, Cooldown> merged = new LinkedHashMap<>();
+        for (Cooldown cooldown : getAllCooldowns(tablePrefix)) {
+            if (cooldown.getCooldownExpiry() >= now.getTime()) {
+                merged.put(key(cooldown), cooldown);
+            }
+        }
+        for (Cooldown cooldown : cooldowns) {
+            if (cooldown.getCooldownExpiry() >= now.getTime()) {
+                merged.put(key(cooldown), cooldown);
+            }
+        }
+        writeCooldownFile(cooldownFile, new ArrayList<>(merged.values()));
+    }
+
+    private static String key(Cooldown cooldown) {
+        return cooldown.getCooldownType().getTypeName() + ':' + cooldown.getCooldownOwner();
+    }
+
     private void writeCooldownFile(File file, List<Cooldown> cooldowns) throws IOException {
-        Files.write(Paths.get(file.getPath()), gson.toJson(cooldowns, cooldownCollectionType).getBytes(StandardCharsets.UTF_8));
+        AtomicFileWriter.writeNow(file.toPath(), gson.toJson(cooldowns, cooldownCollectionType).getBytes(StandardCharsets.UTF_8));
     }
 
     private boolean cooldownExists(@NotNull String cooldownType, @NotNull String cooldownOwner, @NotNull List<Cooldown> current) throws IOException {
@@ -25,11 +25,12 @@
 package me.glaremasters.guilds.database.cooldowns.provider;
 
 import me.glaremasters.guilds.cooldowns.Cooldown;
-import me.glaremasters.guilds.database.cooldowns.CooldownProvider;
 import me.glaremasters.guilds.database.cooldowns.CooldownRowMapper;
+import me.glaremasters.guilds.database.cooldowns.SqlCooldownProvider;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jetbrains.annotations.NotNull;
@@ -38,7 +39,7 @@ import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.List;
 
-public interface CooldownMySQLProvider extends CooldownProvider {
+public interface CooldownMySQLProvider extends SqlCooldownProvider {
     @Override
     @SqlUpdate(
             "CREATE TABLE IF NOT EXISTS <prefix>cooldowns (\n" +
@@ -49,7 +50,21 @@ public interface CooldownMySQLProvider extends CooldownProvider {
                     "  PRIMARY KEY (`id`),\n" +
                     "  UNIQUE (`id`));"
     )
-    void createContainer(@Define("prefix") @NotNull String prefix);
+    void createTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    default void createIndex(@NotNull String prefix) {
+        // MySQL has no CREATE INDEX IF NOT EXISTS, and tables made by older versions don't have the index yet
+        if (!hasTypeOwnerIndex(prefix)) {
+            createTypeOwnerIndex(prefix);
+        }
+    }
+
+    @SqlQuery("SELECT EXISTS(SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = '<prefix>cooldowns' AND index_name = 'type_owner')")
+    boolean hasTypeOwnerIndex(@Define("prefix") @NotNull String prefix);
+
+    @SqlUpdate("CREATE INDEX type_owner ON <prefix>cooldowns(type, owner)")
+    void createTypeOwnerIndex(@Define("prefix") @NotNull String prefix);
 
     @Override
     @SqlQuery("SELECT EXISTS(SELECT 1 FROM <prefix>cooldowns WHERE type = :type AND owner = :owner)")
@@ -67,4 +82,16 @@ public interface CooldownMySQLProvider extends CooldownProvider {
     @Override
     @SqlUpdate("DELETE FROM <prefix>cooldowns WHERE type = :type AND owner = :owner")
     void deleteCooldown(@Define("prefix") @NotNull String prefix, @NotNull @Bind("type") String type, @NotNull @Bind("owner") String owner) throws IOException;
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>cooldowns WHERE type = :type AND owner = :owner")
+    void deleteCooldowns(@Define("prefix") @NotNull String prefix, @Bind("type") @NotNull List<String> types, @Bind("owner") @NotNull List<String> owners);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>cooldowns(id, type, owner, expiry) VALUES (:id, :type, :owner, :expiry)")
+    void insertCooldowns(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("type") @NotNull List<String> types, @Bind("owner") @NotNull List<String> owners, @Bind("expiry") @NotNull List<Timestamp> expiries);
+
+    @Override
+    @SqlUpdate("DELETE FROM <prefix>cooldowns WHERE expiry < :now")
+    void deleteExpired(@Define("prefix") @NotNull String prefix, @Bind("now") @NotNull Timestamp now);
 }
@@ -25,20 +25,39 @@
 package me.glaremasters.guilds.database.guild;
 
 import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.configuration.sections.StorageSettings;
 import me.glaremasters.guilds.database.DatabaseAdapter;
 import me.glaremasters.guilds.database.DatabaseBackend;
 import me.glaremasters.guilds.database.guild.provider.GuildJsonProvider;
 import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildIndex;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jdbi.v3.core.Jdbi;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 public class GuildAdapter {
     private final GuildProvider provider;
+    // The json column provider, only kept to migrate from when the normalized tables are used
+    private GuildProvider legacyProvider;
     private String sqlTablePrefix;
+    // Last json written for each guild, reused while the guild stays clean
+    private final Map<String, String> serialized = new ConcurrentHashMap<>();
+    // Guilds removed since the last save
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
 
     public GuildAdapter(Guilds guilds, DatabaseAdapter adapter) {
         DatabaseBackend backend = adapter.getBackend();
@@ -46,19 +65,47 @@ public class GuildAdapter {
             default:
             case JSON:
                 File fileDataFolder = new File(guilds.getDataFolder(), "data");
-                provider = new GuildJsonProvider(fileDataFolder);
+                long journalSize = adapter.getSettings().getProperty(StorageSettings.JOURNAL_ENABLED)
+                        ? adapter.getSettings().getProperty(StorageSettings.JOURNAL_COMPACT_SIZE) * 1024L : 0;
+                provider = new GuildJsonProvider(fileDataFolder, journalSize);
                 break;
             case MYSQL:
             case SQLITE:
             case MARIADB:
                 sqlTablePrefix = adapter.getSqlTablePrefix();
-                provider = adapter.getDatabaseManager().getJdbi().onDemand(backend.getGuildProvider());
+                Jdbi jdbi = adapter.getDatabaseManager().getJdbi();
+                if (adapter.getSettings().getProperty(StorageSettings.SQL_NORMALIZED)) {
+                    provider = jdbi.onDemand(backend.getNormalizedGuildProvider());
+                    legacyProvider = jdbi.onDemand(backend.getGuildProvider());
+                } else {
+                    provider = jdbi.onDemand(backend.getGuildProvider());
+                }
                 break;
         }
     }
 
     public void createContainer() throws IOException {
         provider.createContainer(sqlTablePrefix);
+        if (provider instanceof NormalizedGuildProvider) {
+            migrateToNormalized((NormalizedGuildProvider) provider);
+        }
+    }
+
+    /**
+     * Copy the guilds out of the json column into the normalized tables the first time they are used.
+     * The old table is left as it is so it can be switched back to.
+     * @param normalized the normalized provider
+     * @throws IOException if the old guilds couldn't be read
+     */
+    private void migrateToNormalized(NormalizedGuildProvider normalized) throws IOException {
+        Integer version = normalized.getSchemaVersion(sqlTablePrefix);
+        if (version != null && version >= NormalizedGuildProvider.SCHEMA_VERSION) return;
+
+        legacyProvider.createContainer(sqlTablePrefix);
+        List<Guild> guilds = legacyProvider.getAllGuilds(sqlTablePrefix);
+        normalized.writeGuilds(sqlTablePrefix, guilds);
+        normalized.setSchemaVersion(sqlTablePrefix, NormalizedGuildProvider.SCHEMA_VERSION);
+        LoggingUtils.info("Moved " + guilds.size() + " guilds to the normalized tables");
     }
 
     public boolean guildExists(@NotNull String id) throws IOException {
@@ -69,49 +116,276 @@ public class GuildAdapter {
         return provider.getAllGuildIds(sqlTablePrefix);
     }
 
+    /**
+     * Get a cheap fingerprint of the stored guilds, the row count and a checksum of the sorted ids.
+     * A snapshot taken with a different marker doesn't match the storage anymore, for example because
+     * another server created or deleted guilds in the same database.
+     * @return the marker
+     * @throws IOException if the ids couldn't be read
+     */
+    public long getStorageMarker() throws IOException {
+        List<String> ids = new ArrayList<>(getAllGuildIds());
+        Collections.sort(ids);
+        CRC32 crc = new CRC32();
+        for (String id : ids) {
+            crc.update(id.getBytes(StandardCharsets.UTF_8));
+        }
+        return ((long) ids.size() << 32) | crc.getValue();
+    }
+
     public List<Guild> getAllGuilds() throws IOException {
         return provider.getAllGuilds(sqlTablePrefix);
     }
 
+    public List<GuildIndex.Entry> getGuildIndex() throws IOException {
+        return provider.getGuildIndex(sqlTablePrefix);
+    }
+
     public Guild getGuild(@NotNull String id) throws IOException {
         return provider.getGuild(sqlTablePrefix, id);
     }
 
-    public void saveGuilds(@NotNull List<Guild> guilds) throws IOException {
-        List<String> savedIds = new ArrayList<>();
+    /**
+     * Write every guild, used when the whole data set has to end up in this backend (migrations).
+     * Guilds that haven't changed reuse the json from their last save, and any stored guild
+     * that isn't in the list is removed.
+     * @param guilds the guilds to save
+     * @throws IOException if the guilds couldn't be written
+     */
+    public synchronized void saveGuilds(@NotNull List<Guild> guilds) throws IOException {
+        long mark = getJournalMark();
+        List<String> ids = new ArrayList<>(guilds.size());
+        List<String> data = new ArrayList<>(guilds.size());
 
         for (Guild guild : guilds) {
-            saveGuild(guild);
-            savedIds.add(guild.getId().toString());
+            ids.add(guild.getId().toString());
+            if (!(provider instanceof NormalizedGuildProvider)) {
+                data.add(serialize(guild));
+            }
+        }
+
+        if (provider instanceof NormalizedGuildProvider) {
+            ((NormalizedGuildProvider) provider).writeGuilds(sqlTablePrefix, guilds);
+        } else if (!ids.isEmpty()) {
+            writeJson(ids, data, mark);
+        }
+
+        Set<String> savedIds = new HashSet<>(ids);
+        List<String> missing = new ArrayList<>();
+        for (String guildId : getAllGuildIds()) {
+            if (!savedIds.contains(guildId)) {
+                missing.add(guildId);
+            }
+        }
+        deleteGuilds(missing);
+    }
+
+    /**
+     * Write only the guilds that changed since they were last saved in one batch,
+     * then remove the guilds that were deleted since the last save.
+     * The write queue, the periodic save and unloading all call this from different threads, so a whole save
+     * (clearing the dirty flag, serializing and writing) runs under one lock. Otherwise an older serialized
+     * state could be written over a newer one after the guild was already marked clean.
+     * @param guilds the guilds to save
+     * @throws IOException if the guilds couldn't be written
+     */
+    public synchronized void saveDirtyGuilds(@NotNull List<Guild> guilds) throws IOException {
+        long mark = getJournalMark();
+        List<Guild> changed = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<String> data = new ArrayList<>();
+
+        for (Guild guild : guilds) {
+            if (!guild.isDirty()) {
+                continue;
+            }
+            // Cleared before serializing so changes made while saving flag it again
+            guild.markClean();
+            changed.add(guild);
+            ids.add(guild.getId().toString());
+            if (!(provider instanceof NormalizedGuildProvider)) {
+                data.add(Guilds.getStorageGson().toJson(guild, Guild.class));
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            try {
+                if (provider instanceof NormalizedGuildProvider) {
+                    ((NormalizedGuildProvider) provider).writeGuilds(sqlTablePrefix, changed);
+                } else {
+                    writeJson(ids, data, mark);
+                }
+            } catch (IOException | RuntimeException ex) {
+                changed.forEach(Guild::markDirty);
+                throw ex;
+            }
+            for (int i = 0; i < data.size(); i++) {
+                serialized.put(ids.get(i), data.get(i));
+            }
         }
 
-        for (String guildId : getAllGuildIds()) { // This may be slow on SQL-based backends, need benchmarking
-            boolean keep = savedIds.stream().anyMatch(id -> id.equals(guildId));
-            if (!keep) {
-                deleteGuild(guildId);
+        List<String> removed = new ArrayList<>();
+        for (String id : deleted) {
+            if (deleted.remove(id)) {
+                removed.add(id);
             }
         }
+        try {
+            deleteGuilds(removed);
+        } catch (IOException | RuntimeException ex) {
+            deleted.addAll(removed);
+            throw ex;
+        }
+    }
 
-        savedIds.clear();
+    /**
+     * Queue a guild to be deleted from storage on the next save
+     * @param id the id of the guild
+     */
+    public void queueDelete(@NotNull String id) {
+        deleted.add(id);
     }
 
-    public void saveGuild(@NotNull Guild guild) throws IOException {
-        if (!guildExists(guild.getId().toString())) {
-            createGuild(guild);
+    /**
+     * Write serialized guilds, checkpointing them in the journal if there is one
+     * @param mark the journal sequence taken before the guilds were serialized
+     */
+    private void writeJson(List<String> ids, List<String> data, long mark) throws IOException {
+        if (hasJournal()) {
+            ((GuildJsonProvider) provider).saveGuilds(ids, data, mark);
         } else {
-            updateGuild(guild);
+            provider.saveGuilds(sqlTablePrefix, ids, data);
+        }
+    }
+
+    private long getJournalMark() {
+        return hasJournal() ? ((GuildJsonProvider) provider).getJournal().getSequence() : 0;
+    }
+
+    private void deleteGuilds(List<String> ids) throws IOException {
+        if (ids.isEmpty()) return;
+        provider.deleteGuilds(sqlTablePrefix, ids);
+        ids.forEach(serialized::remove);
+    }
+
+    private String serialize(Guild guild) {
+        String json = guild.isDirty() ? null : serialized.get(guild.getId().toString());
+        return json != null ? json : Guilds.getStorageGson().toJson(guild, Guild.class);
+    }
+
+    public synchronized void saveGuild(@NotNull Guild guild) throws IOException {
+        if (provider instanceof NormalizedGuildProvider) {
+            ((NormalizedGuildProvider) provider).writeGuilds(sqlTablePrefix, Collections.singletonList(guild));
+            return;
         }
+        long mark = getJournalMark();
+        writeJson(Collections.singletonList(guild.getId().toString()), Collections.singletonList(serialize(guild)), mark);
     }
 
     public void createGuild(@NotNull Guild guild) throws IOException {
-        provider.createGuild(sqlTablePrefix, guild.getId().toString(), Guilds.getGson().toJson(guild, Guild.class));
+        if (provider instanceof NormalizedGuildProvider) {
+            saveGuild(guild);
+            return;
+        }
+        provider.createGuild(sqlTablePrefix, guild.getId().toString(), Guilds.getStorageGson().toJson(guild, Guild.class));
     }
 
-    public void updateGuild(@NotNull Guild guild) throws IOException {
-        provider.updateGuild(sqlTablePrefix, guild.getId().toString(), Guilds.getGson().toJson(guild, Guild.class));
+    public synchronized void updateGuild(@NotNull Guild guild) throws IOException {
+        if (provider instanceof NormalizedGuildProvider) {
+            saveGuild(guild);
+            return;
+        }
+        provider.updateGuild(sqlTablePrefix, guild.getId().toString(), Guilds.getStorageGson().toJson(guild, Guild.class));
     }
 
     public void deleteGuild(@NotNull String id) throws IOException {
+        serialized.remove(id);
         provider.deleteGuild(sqlTablePrefix, id);
     }
+
+    /**
+     * Check if small changes are written to a journal, in which case they are recorded one by one
+     * through {@link #updateBalance(Guild)}, {@link #saveMember(Guild, GuildMember)} and {@link #deleteMember(Guild, UUID)}
+     * @return true if the json storage keeps a journal
+     */
+    public boolean hasJournal() {
+        return provider instanceof GuildJsonProvider && ((GuildJsonProvider) provider).getJournal() != null;
+    }
+
+    /**
+     * Write what is still queued in the journal and close it
+     */
+    public void close() {
+        if (hasJournal()) {
+            ((GuildJsonProvider) provider).getJournal().close();
+        }
+    }
+
+    /**
+     * Check if single members and the balance can be written on their own
+     * @return true if the storage has separate rows for them
+     */
+    public boolean supportsRowUpdates() {
+        return provider.supportsRowUpdates();
+    }
+
+    /**
+     * Write only the balance of a guild, or flag the guild for the next save if the storage can't
+     * @param guild the guild
+     * @throws IOException if the balance couldn't be written
+     */
+    public void updateBalance(@NotNull Guild guild) throws IOException {
+        if (!provider.supportsRowUpdates()) {
+            guild.markDirty();
+            return;
+        }
+        if (hasJournal()) {
+            provider.updateBalance(sqlTablePrefix, guild.getId().toString(), guild.getBalance());
+            return;
+        }
+        // Ordered against full saves so a row write can't be overwritten by an older full write of the guild
+        synchronized (this) {
+            provider.updateBalance(sqlTablePrefix, guild.getId().toString(), guild.getBalance());
+        }
+    }
+
+    /**
+     * Write only a single member of a guild, or flag the guild for the next save if the storage can't
+     * @param guild the guild of the member
+     * @param member the member
+     * @throws IOException if the member couldn't be written
+     */
+    public void saveMember(@NotNull Guild guild, @NotNull GuildMember member) throws IOException {
+        if (!provider.supportsRowUpdates()) {
+            guild.markDirty();
+            return;
+        }
+        if (hasJournal()) {
+            provider.saveMember(sqlTablePrefix, guild.getId().toString(), member.getUuid().toString(), member.getRole().getLevel(), member.getJoinDate(), member.getLastLogin());
+            return;
+        }
+        synchronized (this) {
+            provider.saveMember(sqlTablePrefix, guild.getId().toString(), member.getUuid().toString(), member.getRole().getLevel(), member.getJoinDate(), member.getLastLogin());
+        }
+    }
+
+    /**
+     * Remove only a single member of a guild, or flag the guild for the next save if the storage can't
+     * @param guild the guild of the member
+     * @param uuid the uuid of the member
+     * @throws IOException if the member couldn't be removed
+     */
+    public void deleteMember(@NotNull Guild guild, @NotNull UUID uuid) throws IOException {
+        if (!provider.supportsRowUpdates()) {
+            guild.markDirty();
+            return;
+        }
+        if (hasJournal()) {
+            provider.deleteMember(sqlTablePrefix, guild.getId().toString(), uuid.toString());
+            return;
+        }
+        synchronized (this) {
+            provider.deleteMember(sqlTablePrefix, guild.getId().toString(), uuid.toString());
+        }
+    }
 }
@@ -0,0 +1,546 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.guild;
+
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildRole;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of small guild changes (balance, members joining, leaving or changing role) for the json storage,
+ * so they are on disk within milliseconds instead of waiting for the guild file to be written again.
+ *
+ * Every record is written as its length, a CRC32 of its body and the body. Records are handed to a single writer thread
+ * which writes everything that piled up and syncs the file once for the whole group. Records only ever hold absolute
+ * values, so replaying one twice does no harm.
+ *
+ * When a guild file is written in full a checkpoint is added for it, and the records before the checkpoint are no longer
+ * needed. On startup the records after the last checkpoint of each guild are applied over its file, and every so often
+ * they are folded into the guild files by a {@link Compactor} so the log can start over empty.
+ */
+public class GuildJournal {
+    private static final byte BALANCE = 1;
+    private static final byte MEMBER = 2;
+    private static final byte MEMBER_REMOVED = 3;
+    private static final byte CHECKPOINT = 4;
+    // Anything bigger is a torn or corrupt length, real records are well under this
+    private static final int MAX_RECORD = 4096;
+    // Tells the writer thread to fold the log into the guild files, and to stop
+    private static final Object COMPACT = new Object();
+    private static final Object STOP = new Object();
+
+    private final File file;
+    private final long compactSize;
+    private final Compactor compactor;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    // Guild id -> records since the last checkpoint of that guild, guarded by this
+    private final Map<String, List<Record>> live = new HashMap<>();
+    private long sequence;
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean compactQueued;
+
+    /**
+     * Create a journal, nothing is read until {@link #open()}
+     *
+     * @param file the journal file
+     * @param compactSize how big the file may get in bytes before it's compacted
+     * @param compactor folds the records into the guild files
+     */
+    public GuildJournal(@NotNull File file, long compactSize, @NotNull Compactor compactor) {
+        this.file = file;
+        this.compactSize = compactSize;
+        this.compactor = compactor;
+    }
+
+    /**
+     * Read the records left from the last run and start the writer thread. A torn or corrupt tail,
+     * left by a crash in the middle of a write, is cut off.
+     *
+     * @throws IOException if the journal couldn't be read or opened for writing
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) return;
+        file.getParentFile().mkdirs();
+        long valid = 0;
+        int records = 0;
+        if (file.exists()) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024)) {
+                DataInputStream data = new DataInputStream(in);
+                Record record;
+                while ((record = readRecord(data)) != null) {
+                    valid += 8 + record.size;
+                    records++;
+                    sequence = Math.max(sequence, record.sequence);
+                    track(record);
+                }
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > valid) {
+            LoggingUtils.warn("Cut " + (channel.size() - valid) + " unreadable bytes off the end of the guild journal");
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        channel.position(valid);
+        if (!live.isEmpty()) {
+            LoggingUtils.info("Replaying " + records + " journal records for " + live.size() + " guilds");
+        }
+
+        writer = new Thread(this::run, "Guilds Journal");
+        writer.setDaemon(true);
+        writer.start();
+        if (!live.isEmpty()) {
+            compact();
+        }
+    }
+
+    /**
+     * Record the new balance of a guild
+     *
+     * @param guildId the id of the guild
+     * @param balance the balance
+     */
+    public void appendBalance(@NotNull String guildId, double balance) {
+        Record record = new Record(BALANCE, guildId);
+        record.balance = balance;
+        append(record);
+    }
+
+    /**
+     * Record a member joining or having their role or dates changed
+     *
+     * @param guildId the id of the guild
+     * @param uuid the uuid of the member
+     * @param role the role level of the member
+     * @param joinDate when the member joined
+     * @param lastLogin when the member last logged in
+     */
+    public void appendMember(@NotNull String guildId, @NotNull UUID uuid, int role, long joinDate, long lastLogin) {
+        Record record = new Record(MEMBER, guildId);
+        record.uuid = uuid;
+        record.role = role;
+        record.joinDate = joinDate;
+        record.lastLogin = lastLogin;
+        append(record);
+    }
+
+    /**
+     * Record a member leaving
+     *
+     * @param guildId the id of the guild
+     * @param uuid the uuid of the member
+     */
+    public void appendMemberRemoved(@NotNull String guildId, @NotNull UUID uuid) {
+        Record record = new Record(MEMBER_REMOVED, guildId);
+        record.uuid = uuid;
+        append(record);
+    }
+
+    /**
+     * Get the sequence of the last record, take it before serializing guilds and pass it to {@link #checkpoint(Collection, long)}
+     * once they are written so nothing recorded in between is lost
+     *
+     * @return the current sequence
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Mark guilds as written in full, the records up to the mark aren't needed for them anymore
+     *
+     * @param guildIds the ids of the guilds that were written
+     * @param mark the sequence taken before they were serialized
+     */
+    public synchronized void checkpoint(@NotNull Collection<String> guildIds, long mark) {
+        for (String guildId : guildIds) {
+            List<Record> records = live.get(guildId);
+            if (records == null) continue;
+            records.removeIf(r -> r.sequence <= mark);
+            if (records.isEmpty()) {
+                live.remove(guildId);
+            }
+            Record record = new Record(CHECKPOINT, guildId);
+            record.mark = mark;
+            record.sequence = ++sequence;
+            queue.add(record);
+        }
+    }
+
+    /**
+     * Drop every record of guilds that were deleted
+     *
+     * @param guildIds the ids of the deleted guilds
+     */
+    public synchronized void forget(@NotNull Collection<String> guildIds) {
+        checkpoint(guildIds, sequence);
+    }
+
+    /**
+     * Apply the records since the last full write of a guild to it
+     *
+     * @param guild the guild as it was read from it's file
+     * @return true if anything was applied
+     */
+    public boolean replay(@NotNull Guild guild) {
+        List<Record> records;
+        synchronized (this) {
+            List<Record> current = live.get(guild.getId().toString());
+            if (current == null) return false;
+            records = new ArrayList<>(current);
+        }
+        records.forEach(r -> r.apply(guild));
+        return true;
+    }
+
+    /**
+     * Take every record not covered by a checkpoint yet, only meant for the {@link Compactor}
+     *
+     * @return guild id -> records in the order they were made
+     */
+    public synchronized Map<String, List<Record>> takeLive() {
+        Map<String, List<Record>> taken = new HashMap<>(live);
+        live.clear();
+        return taken;
+    }
+
+    /**
+     * Empty the journal file, only meant for the {@link Compactor} once the taken records are in the guild files.
+     * Records added since they were taken are still queued and end up in the empty file.
+     *
+     * @throws IOException if the file couldn't be truncated
+     */
+    public void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    /**
+     * Write what is still queued and stop the writer thread
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = writer;
+            writer = null;
+        }
+        if (thread == null) return;
+        queue.add(STOP);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LoggingUtils.warn("Failed to close the guild journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized void append(Record record) {
+        record.sequence = ++sequence;
+        track(record);
+        queue.add(record);
+    }
+
+    private void track(Record record) {
+        if (record.type == CHECKPOINT) {
+            List<Record> records = live.get(record.guildId);
+            if (records == null) return;
+            records.removeIf(r -> r.sequence <= record.mark);
+            if (records.isEmpty()) {
+                live.remove(record.guildId);
+            }
+            return;
+        }
+        live.computeIfAbsent(record.guildId, id -> new ArrayList<>()).add(record);
+    }
+
+    private void compact() {
+        if (!compactQueued) {
+            compactQueued = true;
+            queue.add(COMPACT);
+        }
+    }
+
+    /**
+     * The writer thread, writes whatever has piled up and syncs once per group
+     */
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+            ByteArrayOutputStream group = new ByteArrayOutputStream();
+            for (Object item : batch) {
+                if (item instanceof Record) {
+                    writeRecord(group, (Record) item);
+                    continue;
+                }
+                // Everything before a compaction or the stop has to be on disk first
+                flush(group);
+                group.reset();
+                if (item == COMPACT) {
+                    compactQueued = false;
+                    runCompactor();
+                } else if (item == STOP) {
+                    running = false;
+                    break;
+                }
+            }
+            flush(group);
+            batch.clear();
+            try {
+                if (running && channel.size() > compactSize) {
+                    compact();
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void flush(ByteArrayOutputStream group) {
+        if (group.size() == 0) return;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(group.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            // The records are still in memory and the guilds are still dirty, so the next full save covers them
+            LoggingUtils.warn("Failed to write to the guild journal: " + ex.getMessage());
+        }
+    }
+
+    private void runCompactor() {
+        try {
+            long start = System.currentTimeMillis();
+            int guilds = compactor.compact(this);
+            if (guilds > 0) {
+                LoggingUtils.info("Compacted the guild journal into " + guilds + " guild files in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (IOException | RuntimeException ex) {
+            LoggingUtils.warn("Failed to compact the guild journal, it will be replayed on the next start: " + ex.getMessage());
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream group, Record record) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeLong(record.sequence);
+            out.writeByte(record.type);
+            out.writeUTF(record.guildId);
+            switch (record.type) {
+                case BALANCE:
+                    out.writeDouble(record.balance);
+                    break;
+                case MEMBER:
+                    writeUuid(out, record.uuid);
+                    out.writeInt(record.role);
+                    out.writeLong(record.joinDate);
+                    out.writeLong(record.lastLogin);
+                    break;
+                case MEMBER_REMOVED:
+                    writeUuid(out, record.uuid);
+                    break;
+                case CHECKPOINT:
+                    out.writeLong(record.mark);
+                    break;
+            }
+            byte[] bytes = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            DataOutputStream header = new DataOutputStream(group);
+            header.writeInt(bytes.length);
+            header.writeInt((int) crc.getValue());
+            header.write(bytes);
+        } catch (IOException ex) {
+            // Writing to memory doesn't fail
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Read the next record
+     *
+     * @return the record, or null at the end of the file or the first torn or corrupt record
+     */
+    private static Record readRecord(DataInputStream in) throws IOException {
+        byte[] bytes;
+        int checksum;
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_RECORD) return null;
+            checksum = in.readInt();
+            bytes = new byte[length];
+            in.readFully(bytes);
+        } catch (EOFException ex) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != checksum) return null;
+
+        try {
+            DataInputStream body = new DataInputStream(new ByteArrayInputStream(bytes));
+            long sequence = body.readLong();
+            byte type = body.readByte();
+            Record record = new Record(type, body.readUTF());
+            record.sequence = sequence;
+            record.size = bytes.length;
+            switch (type) {
+                case BALANCE:
+                    record.balance = body.readDouble();
+                    break;
+                case MEMBER:
+                    record.uuid = readUuid(body);
+                    record.role = body.readInt();
+                    record.joinDate = body.readLong();
+                    record.lastLogin = body.readLong();
+                    break;
+                case MEMBER_REMOVED:
+                    record.uuid = readUuid(body);
+                    break;
+                case CHECKPOINT:
+                    record.mark = body.readLong();
+                    break;
+                default:
+                    return null;
+            }
+            return record;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Folds journal records into the guild files
+     */
+    @FunctionalInterface
+    public interface Compactor {
+
+        /**
+         * Take the records with {@link #takeLive()}, write them into the guild files and {@link #truncate()} the journal.
+         * Runs on the journal thread, nothing is written to the journal while it runs.
+         *
+         * @param journal the journal
+         * @return how many guild files were written
+         * @throws IOException if the guild files couldn't be written
+         */
+        int compact(@NotNull GuildJournal journal) throws IOException;
+    }
+
+    /**
+     * A single change to a guild
+     */
+    public static final class Record {
+        private final byte type;
+        private final String guildId;
+        private long sequence;
+        private int size;
+        private double balance;
+        private UUID uuid;
+        private int role;
+        private long joinDate;
+        private long lastLogin;
+        private long mark;
+
+        private Record(byte type, String guildId) {
+            this.type = type;
+            this.guildId = guildId;
+        }
+
+        /**
+         * Apply the change to a guild, roles are placeholders until the guild is bound to the loaded roles
+         *
+         * @param guild the guild
+         */
+        public void apply(@NotNull Guild guild) {
+            switch (type) {
+                case BALANCE:
+                    guild.setBalance(balance);
+                    break;
+                case MEMBER:
+                    GuildMember member = guild.getMember(uuid);
+                    if (member == null) {
+                        member = new GuildMember(uuid, new GuildRole("", "", role));
+                        guild.addMemberByCode(member);
+                    } else if (member.getRole().getLevel() != role) {
+                        member.setRole(new GuildRole("", "", role));
+                    }
+                    member.setJoinDate(joinDate);
+                    member.setLastLogin(lastLogin);
+                    break;
+                case MEMBER_REMOVED:
+                    guild.removeMember(guild.getMember(uuid));
+                    break;
+            }
+        }
+    }
+}
@@ -25,11 +25,13 @@
 package me.glaremasters.guilds.database.guild;
 
 import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Created by GlareMasters
@@ -66,6 +68,17 @@ public interface GuildProvider {
      */
     List<Guild> getAllGuilds(@Nullable String tablePrefix) throws IOException;
 
+    /**
+     * Gets the lookup keys of every guild without keeping the guilds themselves.
+     * Storages that can't read parts of a guild load every guild and summarize it.
+     * @param tablePrefix the prefix, if any, to use
+     * @return the index entries
+     * @throws IOException
+     */
+    default List<GuildIndex.Entry> getGuildIndex(@Nullable String tablePrefix) throws IOException {
+        return getAllGuilds(tablePrefix).stream().map(GuildIndex.Entry::of).collect(Collectors.toList());
+    }
+
     /**
      * Gets a single guild by id
      * @param tablePrefix the prefix, if any, to use
@@ -92,6 +105,15 @@ public interface GuildProvider {
      */
     void updateGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException;
 
+    /**
+     * Inserts or updates many guilds in a single batch
+     * @param tablePrefix the prefix, if any, to use
+     * @param ids the ids of the guilds
+     * @param data the data of each guild, in the same order as the ids
+     * @throws IOException
+     */
+    void saveGuilds(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data) throws IOException;
+
     /**
      * Deletes a guild from the database
      * @param tablePrefix the prefix, if any, to use
@@ -99,4 +121,56 @@ public interface GuildProvider {
      * @throws IOException
      */
     void deleteGuild(@Nullable String tablePrefix, @NotNull String id) throws IOException;
+
+    /**
+     * Deletes many guilds in a single batch
+     * @param tablePrefix the prefix, if any, to use
+     * @param ids the guild ids to delete
+     * @throws IOException
+     */
+    void deleteGuilds(@Nullable String tablePrefix, @NotNull List<String> ids) throws IOException;
+
+    /**
+     * Checks whether single members and the balance can be written without saving the whole guild
+     * @return true if the row update methods are supported
+     */
+    default boolean supportsRowUpdates() {
+        return false;
+    }
+
+    /**
+     * Updates only the balance of a guild
+     * @param tablePrefix the prefix, if any, to use
+     * @param id the guild id
+     * @param balance the new balance
+     * @throws IOException
+     */
+    default void updateBalance(@Nullable String tablePrefix, @NotNull String id, double balance) throws IOException {
+        throw new UnsupportedOperationException("This storage only saves whole guilds");
+    }
+
+    /**
+     * Inserts or updates a single member of a guild
+     * @param tablePrefix the prefix, if any, to use
+     * @param guildId the guild id
+     * @param uuid the uuid of the member
+     * @param role the level of the member's role
+     * @param joinDate when the member joined
+     * @param lastLogin when the member was last online
+     * @throws IOException
+     */
+    default void saveMember(@Nullable String tablePrefix, @NotNull String guildId, @NotNull String uuid, int role, long joinDate, long lastLogin) throws IOException {
+        throw new UnsupportedOperationException("This storage only saves whole guilds");
+    }
+
+    /**
+     * Deletes a single member of a guild
+     * @param tablePrefix the prefix, if any, to use
+     * @param guildId the guild id
+     * @param uuid the uuid of the member
+     * @throws IOException
+     */
+    default void deleteMember(@Nullable String tablePrefix, @NotNull String guildId, @NotNull String uuid) throws IOException {
+        throw new UnsupportedOperationException("This storage only saves whole guilds");
+    }
 }
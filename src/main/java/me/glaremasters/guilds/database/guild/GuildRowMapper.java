@@ -26,15 +26,50 @@ package me.glaremasters.guilds.database.guild;
 
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import me.glaremasters.guilds.utils.ParallelUtils;
 import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.result.ResultIterator;
 import org.jdbi.v3.core.statement.StatementContext;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 public class GuildRowMapper implements RowMapper<Guild> {
+    /**
+     * How many rows are fetched from the database and decoded together when streaming
+     */
+    public static final int BATCH_SIZE = 250;
+
     @Override
     public Guild map(ResultSet rs, StatementContext ctx) throws SQLException {
-        return Guilds.getGson().fromJson(rs.getString("data"), Guild.class);
+        return Guilds.getStorageGson().fromJson(rs.getString("data"), Guild.class);
+    }
+
+    /**
+     * Decode the data column of every row while the rows are still being fetched.
+     * Rows are read on the calling thread and parsed in parallel batches.
+     * @param rows the data of each guild, closed once everything was read
+     * @return the decoded guilds
+     * @throws IOException if the rows couldn't be read
+     */
+    public static List<Guild> decodeAll(ResultIterator<String> rows) throws IOException {
+        try (ResultIterator<String> iterator = rows) {
+            return ParallelUtils.mapStream(iterator, GuildRowMapper::decode, BATCH_SIZE);
+        }
+    }
+
+    private static Guild decode(String data) {
+        try {
+            Guild guild = Guilds.getStorageGson().fromJson(data, Guild.class);
+            guild.getId();
+            return guild;
+        } catch (Exception ex) {
+            LoggingUtils.severe("There was an error loading a Guild from the database.");
+            LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
+            return null;
+        }
     }
 }
\ No newline at end of file
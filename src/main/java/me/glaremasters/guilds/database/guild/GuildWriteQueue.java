@@ -0,0 +1,247 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.guild;
+
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.utils.LoggingUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Writes changed guilds shortly after they change instead of waiting for the next full save.
+ * Guilds are queued by id, so any number of changes to a guild within one window end up as a
+ * single write. A single writer thread flushes the queue once per window through the {@link GuildAdapter}.
+ */
+public class GuildWriteQueue {
+
+    private final Supplier<GuildAdapter> adapter;
+    private final BooleanSupplier paused;
+    private final Predicate<Guild> live;
+    private final long window;
+    // Guild id -> the guild and when it was first queued since its last write
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private volatile long lastLatency;
+
+    /**
+     * Create the queue and start the writer thread
+     *
+     * @param adapter supplies the adapter to write through, looked up on every flush since it changes on migration
+     * @param paused true while nothing should be written, queued guilds are kept until it's false again
+     * @param live checks a guild is still loaded, so a guild deleted while queued isn't written back
+     * @param window how long, in milliseconds, changes are collected before they are written
+     */
+    public GuildWriteQueue(@NotNull Supplier<GuildAdapter> adapter, @NotNull BooleanSupplier paused, @NotNull Predicate<Guild> live, long window) {
+        this.adapter = adapter;
+        this.paused = paused;
+        this.live = live;
+        this.window = Math.max(window, 50);
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Guilds Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, this.window, this.window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a changed guild to be written, this is cheap enough to call on every change
+     *
+     * @param guild the guild that changed
+     */
+    public void offer(@NotNull Guild guild) {
+        offered.incrementAndGet();
+        pending.computeIfAbsent(guild.getId(), id -> new Pending(guild, System.currentTimeMillis()));
+    }
+
+    /**
+     * Run a write on the writer thread, after everything handed to it before. Used for single row updates,
+     * which then can't overtake a full write of the same guild or each other.
+     *
+     * @param write the write
+     * @return false if the queue is shut down and the write won't run
+     */
+    public boolean execute(@NotNull Runnable write) {
+        try {
+            writer.execute(write);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Drop a guild from the queue without writing it
+     *
+     * @param id the id of the guild
+     */
+    public void discard(@NotNull UUID id) {
+        pending.remove(id);
+    }
+
+    /**
+     * Write everything that is queued, along with guilds deleted since the last save. Runs on the writer thread.
+     */
+    private void flush() {
+        if (paused.getAsBoolean()) {
+            return;
+        }
+        List<Pending> batch = new ArrayList<>(pending.size());
+        for (UUID id : pending.keySet()) {
+            Pending entry = pending.remove(id);
+            if (entry != null && live.test(entry.guild)) {
+                batch.add(entry);
+            }
+        }
+        List<Guild> guilds = new ArrayList<>(batch.size());
+        batch.forEach(p -> guilds.add(p.guild));
+        try {
+            adapter.get().saveDirtyGuilds(guilds);
+        } catch (IOException | RuntimeException ex) {
+            // Still dirty, try them again on the next flush
+            batch.forEach(p -> pending.putIfAbsent(p.guild.getId(), p));
+            LoggingUtils.warn("Failed to write " + batch.size() + " changed guilds, retrying: " + ex.getMessage());
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long latency = 0;
+        for (Pending entry : batch) {
+            latency += now - entry.queued;
+        }
+        written.addAndGet(batch.size());
+        flushes.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        lastLatency = latency / batch.size();
+    }
+
+    /**
+     * Stop taking new work and write what is left, waiting at most the given time
+     *
+     * @param timeout how long to wait
+     * @param unit the unit of timeout
+     * @return true if everything was written in time
+     */
+    public boolean drain(long timeout, TimeUnit unit) {
+        // Queued before the shutdown so it still runs, the periodic flush is cancelled by it
+        writer.execute(this::flush);
+        writer.shutdown();
+        try {
+            if (writer.awaitTermination(timeout, unit)) {
+                return pending.isEmpty();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Get how many guilds are waiting to be written
+     *
+     * @return queue depth
+     */
+    public int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Get the average time between a guild first changing and it being written, over the last flush
+     *
+     * @return latency in milliseconds
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Get the average time between a guild first changing and it being written, since the queue started
+     *
+     * @return latency in milliseconds
+     */
+    public long getAverageLatency() {
+        long count = written.get();
+        return count == 0 ? 0 : totalLatency.get() / count;
+    }
+
+    /**
+     * Get how many changes were folded into each write, higher means more coalescing
+     *
+     * @return changes per write, or 0 if nothing was written yet
+     */
+    public double getCoalescingRatio() {
+        long count = written.get();
+        return count == 0 ? 0 : (double) offered.get() / count;
+    }
+
+    /**
+     * Get how many guild writes were done since the queue started
+     *
+     * @return written guilds
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Get how many flushes wrote at least one guild
+     *
+     * @return flushes
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    private static final class Pending {
+        private final Guild guild;
+        private final long queued;
+
+        private Pending(Guild guild, long queued) {
+            this.guild = guild;
+            this.queued = queued;
+        }
+    }
+}
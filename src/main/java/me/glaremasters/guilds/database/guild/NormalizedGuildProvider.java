@@ -0,0 +1,283 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.guild;
+
+import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildIndex;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores guilds in one table per kind of data instead of one json column, so single members
+ * or the balance can be written on their own and members and invites can be looked up by index.
+ * The json based methods of {@link GuildProvider} are kept working on top of the tables.
+ * The dialect specific statements are declared by the backend providers.
+ */
+public interface NormalizedGuildProvider extends GuildProvider {
+    /**
+     * The version of the table layout, stored in the schema table once the json data was migrated
+     */
+    int SCHEMA_VERSION = 1;
+
+    void createSchemaTable(@NotNull String prefix);
+
+    void createInfoTable(@NotNull String prefix);
+
+    void createMemberTable(@NotNull String prefix);
+
+    void createAllyTable(@NotNull String prefix);
+
+    void createInviteTable(@NotNull String prefix);
+
+    void createCodeTable(@NotNull String prefix);
+
+    void createVaultTable(@NotNull String prefix);
+
+    /**
+     * Creates the indexes that can't be declared along with the tables
+     * @param prefix the table prefix
+     */
+    default void createIndexes(@NotNull String prefix) {
+    }
+
+    @Override
+    default void createContainer(@Nullable String prefix) {
+        createSchemaTable(prefix);
+        createInfoTable(prefix);
+        createMemberTable(prefix);
+        createAllyTable(prefix);
+        createInviteTable(prefix);
+        createCodeTable(prefix);
+        createVaultTable(prefix);
+        createIndexes(prefix);
+    }
+
+    /**
+     * Get the version of the tables
+     * @param prefix the table prefix
+     * @return the version or null if the json data hasn't been migrated yet
+     */
+    Integer getSchemaVersion(@NotNull String prefix);
+
+    void setSchemaVersion(@NotNull String prefix, int version);
+
+    List<NormalizedGuildRows.InfoRow> getInfoRows(@NotNull String prefix);
+
+    List<GuildIndex.Entry> getIndexRows(@NotNull String prefix);
+
+    List<NormalizedGuildRows.KeyRow> getMemberKeys(@NotNull String prefix);
+
+    List<NormalizedGuildRows.KeyRow> getInviteKeys(@NotNull String prefix);
+
+    List<NormalizedGuildRows.KeyRow> getCodeKeys(@NotNull String prefix);
+
+    List<NormalizedGuildRows.MemberRow> getMemberRows(@NotNull String prefix);
+
+    List<NormalizedGuildRows.AllyRow> getAllyRows(@NotNull String prefix);
+
+    List<NormalizedGuildRows.InviteRow> getInviteRows(@NotNull String prefix);
+
+    List<NormalizedGuildRows.CodeRow> getCodeRows(@NotNull String prefix);
+
+    List<NormalizedGuildRows.VaultRow> getVaultRows(@NotNull String prefix);
+
+    List<NormalizedGuildRows.InfoRow> getInfoRows(@NotNull String prefix, @NotNull String id);
+
+    List<NormalizedGuildRows.MemberRow> getMemberRows(@NotNull String prefix, @NotNull String id);
+
+    List<NormalizedGuildRows.AllyRow> getAllyRows(@NotNull String prefix, @NotNull String id);
+
+    List<NormalizedGuildRows.InviteRow> getInviteRows(@NotNull String prefix, @NotNull String id);
+
+    List<NormalizedGuildRows.CodeRow> getCodeRows(@NotNull String prefix, @NotNull String id);
+
+    List<NormalizedGuildRows.VaultRow> getVaultRows(@NotNull String prefix, @NotNull String id);
+
+    /**
+     * Find the guild of a player through the member index
+     * @param prefix the table prefix
+     * @param player the uuid of the player
+     * @return the id of the guild or null if the player isn't in one
+     */
+    String getGuildIdByMember(@NotNull String prefix, @NotNull String player);
+
+    /**
+     * Find the guilds that invited a player through the invite index
+     * @param prefix the table prefix
+     * @param player the uuid of the player
+     * @return the ids of the guilds
+     */
+    List<String> getGuildIdsByInvite(@NotNull String prefix, @NotNull String player);
+
+    void upsertInfos(@NotNull String prefix, @NotNull List<NormalizedGuildRows.GuildInfo> infos);
+
+    void insertMembers(@NotNull String prefix, @NotNull List<String> guilds, @NotNull List<String> uuids, @NotNull List<Integer> roles, @NotNull List<Long> joinDates, @NotNull List<Long> lastLogins);
+
+    void insertAllies(@NotNull String prefix, @NotNull List<String> guilds, @NotNull List<String> allies, @NotNull List<Boolean> pending);
+
+    void insertInvites(@NotNull String prefix, @NotNull List<String> guilds, @NotNull List<String> players);
+
+    void insertCodes(@NotNull String prefix, @NotNull List<String> guilds, @NotNull List<String> codes, @NotNull List<Integer> uses, @NotNull List<String> creators, @NotNull List<String> redeemers);
+
+    void insertVaults(@NotNull String prefix, @NotNull List<String> guilds, @NotNull List<Integer> indexes, @NotNull List<String> data);
+
+    void deleteInfos(@NotNull String prefix, @NotNull List<String> ids);
+
+    void deleteMembers(@NotNull String prefix, @NotNull List<String> ids);
+
+    void deleteAllies(@NotNull String prefix, @NotNull List<String> ids);
+
+    void deleteInvites(@NotNull String prefix, @NotNull List<String> ids);
+
+    void deleteCodes(@NotNull String prefix, @NotNull List<String> ids);
+
+    void deleteVaults(@NotNull String prefix, @NotNull List<String> ids);
+
+    /**
+     * Write guilds to every table in one transaction. The rows of the lists are replaced as a whole,
+     * which keeps this to a fixed number of batches no matter how many guilds are written.
+     * @param prefix the table prefix
+     * @param guilds the guilds to write
+     */
+    @Transaction
+    default void writeGuilds(@Nullable String prefix, @NotNull Collection<Guild> guilds) {
+        if (guilds.isEmpty()) return;
+        NormalizedGuildRows.Batch batch = new NormalizedGuildRows.Batch(guilds);
+        deleteChildren(prefix, batch.ids);
+        upsertInfos(prefix, batch.infos);
+        if (!batch.memberIds.isEmpty()) {
+            insertMembers(prefix, batch.memberGuilds, batch.memberIds, batch.memberRoles, batch.memberJoins, batch.memberLogins);
+        }
+        if (!batch.allyIds.isEmpty()) {
+            insertAllies(prefix, batch.allyGuilds, batch.allyIds, batch.allyPending);
+        }
+        if (!batch.invitePlayers.isEmpty()) {
+            insertInvites(prefix, batch.inviteGuilds, batch.invitePlayers);
+        }
+        if (!batch.codeIds.isEmpty()) {
+            insertCodes(prefix, batch.codeGuilds, batch.codeIds, batch.codeUses, batch.codeCreators, batch.codeRedeemers);
+        }
+        if (!batch.vaultData.isEmpty()) {
+            insertVaults(prefix, batch.vaultGuilds, batch.vaultIndexes, batch.vaultData);
+        }
+    }
+
+    default void deleteChildren(@Nullable String prefix, @NotNull List<String> ids) {
+        deleteMembers(prefix, ids);
+        deleteAllies(prefix, ids);
+        deleteInvites(prefix, ids);
+        deleteCodes(prefix, ids);
+        deleteVaults(prefix, ids);
+    }
+
+    @Override
+    default List<Guild> getAllGuilds(@Nullable String prefix) {
+        return NormalizedGuildRows.assemble(getInfoRows(prefix), getMemberRows(prefix), getAllyRows(prefix),
+                getInviteRows(prefix), getCodeRows(prefix), getVaultRows(prefix));
+    }
+
+    /**
+     * Build the index from the key columns only, without reading the rest of the guilds
+     */
+    @Override
+    default List<GuildIndex.Entry> getGuildIndex(@Nullable String prefix) {
+        List<GuildIndex.Entry> entries = getIndexRows(prefix);
+        Map<UUID, GuildIndex.Entry> byId = new HashMap<>(entries.size() * 2);
+        entries.forEach(entry -> byId.put(entry.getId(), entry));
+        for (NormalizedGuildRows.KeyRow row : getMemberKeys(prefix)) {
+            GuildIndex.Entry entry = byId.get(row.getGuild());
+            if (entry != null) {
+                entry.getMembers().add(UUID.fromString(row.getKey()));
+            }
+        }
+        for (NormalizedGuildRows.KeyRow row : getInviteKeys(prefix)) {
+            GuildIndex.Entry entry = byId.get(row.getGuild());
+            if (entry != null) {
+                entry.getInvites().add(UUID.fromString(row.getKey()));
+            }
+        }
+        for (NormalizedGuildRows.KeyRow row : getCodeKeys(prefix)) {
+            GuildIndex.Entry entry = byId.get(row.getGuild());
+            if (entry != null) {
+                entry.getCodes().add(row.getKey());
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    default Guild getGuild(@Nullable String prefix, @NotNull String id) {
+        List<NormalizedGuildRows.InfoRow> info = getInfoRows(prefix, id);
+        if (info.isEmpty()) return null;
+        return NormalizedGuildRows.assemble(info, getMemberRows(prefix, id), getAllyRows(prefix, id),
+                getInviteRows(prefix, id), getCodeRows(prefix, id), getVaultRows(prefix, id)).get(0);
+    }
+
+    @Override
+    default void createGuild(@Nullable String prefix, String id, String data) {
+        saveGuilds(prefix, Collections.singletonList(id), Collections.singletonList(data));
+    }
+
+    @Override
+    default void updateGuild(@Nullable String prefix, @NotNull String id, @NotNull String data) {
+        saveGuilds(prefix, Collections.singletonList(id), Collections.singletonList(data));
+    }
+
+    @Override
+    default void saveGuilds(@Nullable String prefix, @NotNull List<String> ids, @NotNull List<String> data) {
+        List<Guild> guilds = new ArrayList<>(data.size());
+        for (String json : data) {
+            guilds.add(Guilds.getStorageGson().fromJson(json, Guild.class));
+        }
+        writeGuilds(prefix, guilds);
+    }
+
+    @Override
+    default void deleteGuild(@Nullable String prefix, @NotNull String id) {
+        deleteGuilds(prefix, Collections.singletonList(id));
+    }
+
+    @Override
+    @Transaction
+    default void deleteGuilds(@Nullable String prefix, @NotNull List<String> ids) {
+        deleteChildren(prefix, ids);
+        deleteInfos(prefix, ids);
+    }
+
+    @Override
+    default boolean supportsRowUpdates() {
+        return true;
+    }
+}
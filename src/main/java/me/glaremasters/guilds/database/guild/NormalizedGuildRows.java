@@ -0,0 +1,470 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.guild;
+
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildCode;
+import me.glaremasters.guilds.guild.GuildHome;
+import me.glaremasters.guilds.guild.GuildIndex;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildRole;
+import me.glaremasters.guilds.guild.GuildScore;
+import me.glaremasters.guilds.guild.GuildSkull;
+import me.glaremasters.guilds.guild.GuildTier;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Rows of the normalized guild tables and how they are put back together into guilds.
+ */
+public final class NormalizedGuildRows {
+
+    private NormalizedGuildRows() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Build guilds from the rows of every table. Rows of guilds that have no info row are ignored.
+     * @return the guilds, in the order of their info rows
+     */
+    public static List<Guild> assemble(List<InfoRow> infos, List<MemberRow> members, List<AllyRow> allies, List<InviteRow> invites, List<CodeRow> codes, List<VaultRow> vaults) {
+        Map<UUID, Guild> guilds = new LinkedHashMap<>(infos.size() * 2);
+        for (InfoRow info : infos) {
+            guilds.put(info.id, info.toGuild());
+        }
+        for (MemberRow row : members) {
+            Guild guild = guilds.get(row.guild);
+            if (guild != null) {
+                guild.getMembers().add(row.member);
+            }
+        }
+        for (AllyRow row : allies) {
+            Guild guild = guilds.get(row.guild);
+            if (guild != null) {
+                (row.pending ? guild.getPendingAllies() : guild.getAllies()).add(row.ally);
+            }
+        }
+        for (InviteRow row : invites) {
+            Guild guild = guilds.get(row.guild);
+            if (guild != null) {
+                guild.getInvitedMembers().add(row.player);
+            }
+        }
+        for (CodeRow row : codes) {
+            Guild guild = guilds.get(row.guild);
+            if (guild != null) {
+                guild.getCodes().add(row.code);
+            }
+        }
+        Map<UUID, List<VaultRow>> vaultRows = vaults.stream().collect(Collectors.groupingBy(row -> row.guild));
+        for (InfoRow info : infos) {
+            Guild guild = guilds.get(info.id);
+            List<VaultRow> rows = vaultRows.getOrDefault(info.id, Collections.emptyList());
+            rows.sort((a, b) -> Integer.compare(a.index, b.index));
+            for (VaultRow row : rows) {
+                guild.getVaults().add(row.data);
+            }
+            // The master is stored as a member, point at the same object like the json format did
+            if (info.master != null) {
+                GuildMember master = guild.getMember(info.master);
+                guild.setGuildMaster(master != null ? master : new GuildMember(info.master, new GuildRole("", "", 0)));
+            }
+            guild.markClean();
+        }
+        return new ArrayList<>(guilds.values());
+    }
+
+    /**
+     * The rows of many guilds, flattened into the columns of each table so every table
+     * can be written in one batch. Duplicate entries in a guild's lists are dropped
+     * since they would break the primary keys.
+     */
+    public static final class Batch {
+        final List<String> ids = new ArrayList<>();
+        final List<GuildInfo> infos = new ArrayList<>();
+        final List<String> memberGuilds = new ArrayList<>();
+        final List<String> memberIds = new ArrayList<>();
+        final List<Integer> memberRoles = new ArrayList<>();
+        final List<Long> memberJoins = new ArrayList<>();
+        final List<Long> memberLogins = new ArrayList<>();
+        final List<String> allyGuilds = new ArrayList<>();
+        final List<String> allyIds = new ArrayList<>();
+        final List<Boolean> allyPending = new ArrayList<>();
+        final List<String> inviteGuilds = new ArrayList<>();
+        final List<String> invitePlayers = new ArrayList<>();
+        final List<String> codeGuilds = new ArrayList<>();
+        final List<String> codeIds = new ArrayList<>();
+        final List<Integer> codeUses = new ArrayList<>();
+        final List<String> codeCreators = new ArrayList<>();
+        final List<String> codeRedeemers = new ArrayList<>();
+        final List<String> vaultGuilds = new ArrayList<>();
+        final List<Integer> vaultIndexes = new ArrayList<>();
+        final List<String> vaultData = new ArrayList<>();
+
+        public Batch(Collection<Guild> guilds) {
+            for (Guild guild : guilds) {
+                String id = guild.getId().toString();
+                ids.add(id);
+                infos.add(new GuildInfo(guild));
+
+                Set<UUID> seen = new HashSet<>();
+                for (GuildMember member : guild.getMembers()) {
+                    if (!seen.add(member.getUuid())) continue;
+                    memberGuilds.add(id);
+                    memberIds.add(member.getUuid().toString());
+                    memberRoles.add(member.getRole().getLevel());
+                    memberJoins.add(member.getJoinDate());
+                    memberLogins.add(member.getLastLogin());
+                }
+                addAllies(id, guild.getAllies(), false);
+                addAllies(id, guild.getPendingAllies(), true);
+
+                seen.clear();
+                for (UUID player : guild.getInvitedMembers()) {
+                    if (!seen.add(player)) continue;
+                    inviteGuilds.add(id);
+                    invitePlayers.add(player.toString());
+                }
+
+                Set<String> codes = new HashSet<>();
+                for (GuildCode code : guild.getCodes()) {
+                    if (!codes.add(code.getId())) continue;
+                    codeGuilds.add(id);
+                    codeIds.add(code.getId());
+                    codeUses.add(code.getUses());
+                    codeCreators.add(code.getCreator().toString());
+                    codeRedeemers.add(code.getRedeemers().stream().map(UUID::toString).collect(Collectors.joining(",")));
+                }
+
+                List<String> vaults = guild.getVaults();
+                for (int i = 0; i < vaults.size(); i++) {
+                    vaultGuilds.add(id);
+                    vaultIndexes.add(i);
+                    vaultData.add(vaults.get(i));
+                }
+            }
+        }
+
+        private void addAllies(String id, List<UUID> allies, boolean pending) {
+            Set<UUID> seen = new HashSet<>();
+            for (UUID ally : allies) {
+                if (!seen.add(ally)) continue;
+                allyGuilds.add(id);
+                allyIds.add(ally.toString());
+                allyPending.add(pending);
+            }
+        }
+    }
+
+    /**
+     * The single row values of a guild, bound by name into the guild_info statements.
+     */
+    public static final class GuildInfo {
+        private final Guild guild;
+        private final GuildHome home;
+
+        private GuildInfo(Guild guild) {
+            this.guild = guild;
+            this.home = guild.getHome();
+        }
+
+        public String getId() {
+            return guild.getId().toString();
+        }
+
+        public String getName() {
+            return guild.getName();
+        }
+
+        public String getPrefix() {
+            return guild.getPrefix();
+        }
+
+        public String getMotd() {
+            return guild.getMotd();
+        }
+
+        public String getMaster() {
+            return guild.getGuildMaster() == null ? null : guild.getGuildMaster().getUuid().toString();
+        }
+
+        public String getHomeWorld() {
+            return home == null ? null : home.getWorld();
+        }
+
+        public Double getHomeX() {
+            return home == null ? null : home.getX();
+        }
+
+        public Double getHomeY() {
+            return home == null ? null : home.getY();
+        }
+
+        public Double getHomeZ() {
+            return home == null ? null : home.getZ();
+        }
+
+        public Float getHomeYaw() {
+            return home == null ? null : home.getYaw();
+        }
+
+        public Float getHomePitch() {
+            return home == null ? null : home.getPitch();
+        }
+
+        public String getSkull() {
+            return guild.getGuildSkull() == null ? null : guild.getGuildSkull().getSerialized();
+        }
+
+        public String getStatus() {
+            return guild.getStatus() == null ? null : guild.getStatus().name();
+        }
+
+        public int getTier() {
+            return guild.getTier() == null ? 1 : guild.getTier().getLevel();
+        }
+
+        public int getWins() {
+            return guild.getGuildScore().getWins();
+        }
+
+        public int getLoses() {
+            return guild.getGuildScore().getLoses();
+        }
+
+        public double getBalance() {
+            return guild.getBalance();
+        }
+
+        public long getLastDefended() {
+            return guild.getLastDefended();
+        }
+
+        public long getCreationDate() {
+            return guild.getCreationDate();
+        }
+    }
+
+    public static final class InfoRow {
+        private final UUID id;
+        private final UUID master;
+        private final Guild.GuildBuilder builder;
+        private final long creationDate;
+
+        private InfoRow(UUID id, UUID master, Guild.GuildBuilder builder, long creationDate) {
+            this.id = id;
+            this.master = master;
+            this.builder = builder;
+            this.creationDate = creationDate;
+        }
+
+        private Guild toGuild() {
+            Guild guild = builder.members(new ArrayList<>()).invitedMembers(new ArrayList<>()).allies(new ArrayList<>())
+                    .pendingAllies(new ArrayList<>()).codes(new ArrayList<>()).vaults(new ArrayList<>()).build();
+            guild.setCreationDate(creationDate);
+            return guild;
+        }
+    }
+
+    public static final class MemberRow {
+        private final UUID guild;
+        private final GuildMember member;
+
+        private MemberRow(UUID guild, GuildMember member) {
+            this.guild = guild;
+            this.member = member;
+        }
+    }
+
+    public static final class AllyRow {
+        private final UUID guild;
+        private final UUID ally;
+        private final boolean pending;
+
+        private AllyRow(UUID guild, UUID ally, boolean pending) {
+            this.guild = guild;
+            this.ally = ally;
+            this.pending = pending;
+        }
+    }
+
+    public static final class InviteRow {
+        private final UUID guild;
+        private final UUID player;
+
+        private InviteRow(UUID guild, UUID player) {
+            this.guild = guild;
+            this.player = player;
+        }
+    }
+
+    public static final class CodeRow {
+        private final UUID guild;
+        private final GuildCode code;
+
+        private CodeRow(UUID guild, GuildCode code) {
+            this.guild = guild;
+            this.code = code;
+        }
+    }
+
+    public static final class VaultRow {
+        private final UUID guild;
+        private final int index;
+        private final String data;
+
+        private VaultRow(UUID guild, int index, String data) {
+            this.guild = guild;
+            this.index = index;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A guild id along with one key column of a child table
+     */
+    public static final class KeyRow {
+        private final UUID guild;
+        private final String key;
+
+        private KeyRow(UUID guild, String key) {
+            this.guild = guild;
+            this.key = key;
+        }
+
+        public UUID getGuild() {
+            return guild;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    public static class IndexMapper implements RowMapper<GuildIndex.Entry> {
+        @Override
+        public GuildIndex.Entry map(ResultSet rs, StatementContext ctx) throws SQLException {
+            return new GuildIndex.Entry(UUID.fromString(rs.getString("id")), rs.getString("name"), rs.getString("prefix"), Guild.Status.Private.name().equals(rs.getString("status")));
+        }
+    }
+
+    public static class KeyMapper implements RowMapper<KeyRow> {
+        @Override
+        public KeyRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            return new KeyRow(UUID.fromString(rs.getString("guild_id")), rs.getString("k"));
+        }
+    }
+
+    public static class InfoMapper implements RowMapper<InfoRow> {
+        @Override
+        public InfoRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            UUID id = UUID.fromString(rs.getString("id"));
+            Guild.GuildBuilder builder = Guild.builder()
+                    .id(id)
+                    .name(rs.getString("name"))
+                    .prefix(rs.getString("prefix"))
+                    .motd(rs.getString("motd"))
+                    .balance(rs.getDouble("balance"))
+                    .lastDefended(rs.getLong("last_defended"))
+                    .tier(GuildTier.builder().level(rs.getInt("tier")).build());
+            String world = rs.getString("home_world");
+            if (world != null) {
+                builder.home(new GuildHome(world, rs.getDouble("home_x"), rs.getDouble("home_y"), rs.getDouble("home_z"), rs.getFloat("home_yaw"), rs.getFloat("home_pitch")));
+            }
+            String skull = rs.getString("skull");
+            if (skull != null) {
+                builder.guildSkull(GuildSkull.fromSerialized(skull));
+            }
+            String status = rs.getString("status");
+            if (status != null) {
+                builder.status(Guild.Status.valueOf(status));
+            }
+            GuildScore score = new GuildScore();
+            score.setWins(rs.getInt("wins"));
+            score.setLoses(rs.getInt("loses"));
+            builder.guildScore(score);
+            String master = rs.getString("master");
+            return new InfoRow(id, master == null ? null : UUID.fromString(master), builder, rs.getLong("creation_date"));
+        }
+    }
+
+    public static class MemberMapper implements RowMapper<MemberRow> {
+        @Override
+        public MemberRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            GuildMember member = new GuildMember(UUID.fromString(rs.getString("uuid")), new GuildRole("", "", rs.getInt("role")));
+            member.setJoinDate(rs.getLong("join_date"));
+            member.setLastLogin(rs.getLong("last_login"));
+            return new MemberRow(UUID.fromString(rs.getString("guild_id")), member);
+        }
+    }
+
+    public static class AllyMapper implements RowMapper<AllyRow> {
+        @Override
+        public AllyRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            return new AllyRow(UUID.fromString(rs.getString("guild_id")), UUID.fromString(rs.getString("ally_id")), rs.getBoolean("pending"));
+        }
+    }
+
+    public static class InviteMapper implements RowMapper<InviteRow> {
+        @Override
+        public InviteRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            return new InviteRow(UUID.fromString(rs.getString("guild_id")), UUID.fromString(rs.getString("player")));
+        }
+    }
+
+    public static class CodeMapper implements RowMapper<CodeRow> {
+        @Override
+        public CodeRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            String redeemers = rs.getString("redeemers");
+            List<UUID> redeemed = new ArrayList<>();
+            if (redeemers != null && !redeemers.isEmpty()) {
+                Arrays.stream(redeemers.split(",")).map(UUID::fromString).forEach(redeemed::add);
+            }
+            GuildCode code = new GuildCode(rs.getString("code"), rs.getInt("uses"), UUID.fromString(rs.getString("creator")), redeemed);
+            return new CodeRow(UUID.fromString(rs.getString("guild_id")), code);
+        }
+    }
+
+    public static class VaultMapper implements RowMapper<VaultRow> {
+        @Override
+        public VaultRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+            return new VaultRow(UUID.fromString(rs.getString("guild_id")), rs.getInt("idx"), rs.getString("data"));
+        }
+    }
+}
@@ -26,23 +26,27 @@ package me.glaremasters.guilds.database.guild.provider;
 
 import com.google.gson.Gson;
 import me.glaremasters.guilds.Guilds;
+import me.glaremasters.guilds.database.JsonFileStore;
+import me.glaremasters.guilds.database.guild.GuildJournal;
 import me.glaremasters.guilds.database.guild.GuildProvider;
 import me.glaremasters.guilds.guild.Guild;
 import me.glaremasters.guilds.utils.LoggingUtils;
+import me.glaremasters.guilds.utils.ParallelUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Created by GlareMasters
@@ -50,92 +54,206 @@ import java.util.Objects;
  * Time: 11:38 AM
  */
 public class GuildJsonProvider implements GuildProvider {
-    private final File dataFolder;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final JsonFileStore store;
+    private final GuildJournal journal;
+    // Held while guild files are written or read together with the journal, so a compaction never interleaves with them
+    private final Object lock = new Object();
     private Gson gson;
 
     public GuildJsonProvider(File dataFolder) {
-        this.dataFolder = dataFolder;
-        this.gson = Guilds.getGson();
+        this(dataFolder, 0);
+    }
+
+    /**
+     * @param dataFolder the folder with the guild files
+     * @param journalCompactSize how big the journal may get in bytes before it's compacted, or 0 for no journal
+     */
+    public GuildJsonProvider(File dataFolder, long journalCompactSize) {
+        this.store = new JsonFileStore(dataFolder);
+        this.gson = Guilds.getStorageGson();
+        this.journal = journalCompactSize > 0 ? new GuildJournal(new File(dataFolder, "guilds.journal"), journalCompactSize, this::compact) : null;
     }
 
     @Override
-    public void createContainer(@Nullable String tablePrefix) {
-        if (!this.dataFolder.exists()) {
-            this.dataFolder.mkdir();
+    public void createContainer(@Nullable String tablePrefix) throws IOException {
+        store.open();
+        if (journal != null) {
+            journal.open();
         }
     }
 
+    /**
+     * Get the journal of small changes
+     * @return the journal, or null if it's turned off
+     */
+    @Nullable
+    public GuildJournal getJournal() {
+        return journal;
+    }
+
     @Override
-    public boolean guildExists(@Nullable String tablePrefix, @NotNull String id) {
-        return Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .map(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()))
-                .anyMatch(n -> n.equals(id));
+    public boolean guildExists(@Nullable String tablePrefix, @NotNull String id) throws IOException {
+        return store.exists(id);
     }
 
     @Override
-    public List<String> getAllGuildIds(@Nullable String tablePrefix) {
-        List<String> loadedGuildIds = new ArrayList<>();
+    public List<String> getAllGuildIds(@Nullable String tablePrefix) throws IOException {
+        return store.getIds();
+    }
 
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            loadedGuildIds.add(com.google.common.io.Files.getNameWithoutExtension(file.getName()));
+    @Override
+    public List<Guild> getAllGuilds(@Nullable String tablePrefix) throws IOException {
+        synchronized (lock) {
+            return ParallelUtils.map(store.getIds(), this::loadGuild);
         }
-
-        return loadedGuildIds;
     }
 
-    @Override
-    public List<Guild> getAllGuilds(@Nullable String tablePrefix) {
-        List<Guild> loadedGuilds = new ArrayList<>();
-
-        for (File file : Objects.requireNonNull(dataFolder.listFiles())) {
-            try {
-                Guild guild = gson.fromJson(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), Guild.class);
-                guild.getId();
-                loadedGuilds.add(guild);
-            } catch (Exception ex) {
-                LoggingUtils.severe("There was an error loading a Guild from the following file: " + file.getAbsolutePath());
-                LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
-            }
+    /**
+     * Parse a single guild file and apply the journal to it, safe to call from several threads at once
+     * @param id the id of the guild
+     * @return the guild or null if it's missing or couldn't be parsed
+     */
+    private Guild loadGuild(String id) {
+        Guild guild = readGuild(id);
+        if (guild != null && journal != null) {
+            journal.replay(guild);
         }
+        return guild;
+    }
 
-        return loadedGuilds;
+    private Guild readGuild(String id) {
+        File file = store.getFile(id);
+        if (!file.exists()) return null;
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            Guild guild = gson.fromJson(reader, Guild.class);
+            guild.getId();
+            return guild;
+        } catch (Exception ex) {
+            LoggingUtils.severe("There was an error loading a Guild from the following file: " + file.getAbsolutePath());
+            LoggingUtils.severe("To prevent data loss in the plugin, this Guild has been prevented from loading.");
+            return null;
+        }
     }
 
     @Override
     public Guild getGuild(@Nullable String tablePrefix, @NotNull String id) throws IOException {
-        File data = Arrays.stream(Objects.requireNonNull(dataFolder.listFiles()))
-                .filter(f -> com.google.common.io.Files.getNameWithoutExtension(f.getName()).equals(id))
-                .findFirst()
-                .orElse(null);
+        if (!store.exists(id)) return null;
 
-        if (data == null) return null;
+        File data = store.getFile(id);
+        if (!data.exists()) return null;
 
-        return gson.fromJson(new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8), Guild.class);
+        synchronized (lock) {
+            Guild guild;
+            try (Reader reader = new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8)) {
+                guild = gson.fromJson(reader, Guild.class);
+            }
+            if (guild != null && journal != null) {
+                journal.replay(guild);
+            }
+            return guild;
+        }
     }
 
     @Override
     public void createGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
         if (guildExists(tablePrefix, id)) return;
-        writeGuildFile(new File(dataFolder, id + ".json"), data);
+        store.write(id, data);
     }
 
     @Override
     public void updateGuild(@Nullable String tablePrefix, @NotNull String id, @NotNull String data) throws IOException {
-        File file = new File(dataFolder, id + ".json");
-        deleteGuild(file);
-        writeGuildFile(file, data);
+        synchronized (lock) {
+            store.write(id, data);
+        }
     }
 
-    private void writeGuildFile(File file, String data) throws IOException {
-        Files.write(Paths.get(file.getPath()), data.getBytes(StandardCharsets.UTF_8));
+    @Override
+    public void saveGuilds(@Nullable String tablePrefix, @NotNull List<String> ids, @NotNull List<String> data) throws IOException {
+        synchronized (lock) {
+            store.writeAll(ids, data);
+        }
+    }
+
+    /**
+     * Write guilds and checkpoint them in the journal, so the journal records they already contain aren't replayed
+     * @param ids the ids of the guilds
+     * @param data the json of the guilds
+     * @param mark the journal sequence taken before the guilds were serialized
+     * @throws IOException if the guilds couldn't be written
+     */
+    public void saveGuilds(@NotNull List<String> ids, @NotNull List<String> data, long mark) throws IOException {
+        synchronized (lock) {
+            store.writeAll(ids, data);
+            if (journal != null) {
+                journal.checkpoint(ids, mark);
+            }
+        }
     }
 
     @Override
-    public void deleteGuild(@Nullable String tablePrefix, @NotNull String id) {
-        deleteGuild(new File(dataFolder, id + ".json"));
+    public void deleteGuild(@Nullable String tablePrefix, @NotNull String id) throws IOException {
+        synchronized (lock) {
+            store.delete(id);
+            if (journal != null) {
+                journal.forget(Collections.singletonList(id));
+            }
+        }
+    }
+
+    @Override
+    public void deleteGuilds(@Nullable String tablePrefix, @NotNull List<String> ids) throws IOException {
+        synchronized (lock) {
+            store.deleteAll(ids);
+            if (journal != null) {
+                journal.forget(ids);
+            }
+        }
     }
 
-    private void deleteGuild(File file) {
-        if (file.exists()) file.delete();
+    @Override
+    public boolean supportsRowUpdates() {
+        return journal != null;
+    }
+
+    @Override
+    public void updateBalance(@Nullable String tablePrefix, @NotNull String id, double balance) {
+        journal.appendBalance(id, balance);
+    }
+
+    @Override
+    public void saveMember(@Nullable String tablePrefix, @NotNull String guildId, @NotNull String uuid, int role, long joinDate, long lastLogin) {
+        journal.appendMember(guildId, UUID.fromString(uuid), role, joinDate, lastLogin);
+    }
+
+    @Override
+    public void deleteMember(@Nullable String tablePrefix, @NotNull String guildId, @NotNull String uuid) {
+        journal.appendMemberRemoved(guildId, UUID.fromString(uuid));
+    }
+
+    /**
+     * Fold the journal into the guild files, runs on the journal thread
+     * @param journal the journal
+     * @return how many guild files were written
+     * @throws IOException if the guild files couldn't be written
+     */
+    private int compact(GuildJournal journal) throws IOException {
+        synchronized (lock) {
+            Map<String, List<GuildJournal.Record>> records = journal.takeLive();
+            List<String> ids = new ArrayList<>(records.size());
+            List<String> data = new ArrayList<>(records.size());
+            for (Map.Entry<String, List<GuildJournal.Record>> entry : records.entrySet()) {
+                Guild guild = store.exists(entry.getKey()) ? readGuild(entry.getKey()) : null;
+                if (guild == null) continue;
+                entry.getValue().forEach(r -> r.apply(guild));
+                ids.add(entry.getKey());
+                data.add(gson.toJson(guild, Guild.class));
+            }
+            if (!ids.isEmpty()) {
+                store.writeAll(ids, data);
+            }
+            journal.truncate();
+            return ids.size();
+        }
     }
 }
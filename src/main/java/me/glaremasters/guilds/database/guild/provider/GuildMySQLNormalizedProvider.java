@@ -0,0 +1,301 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.guild.provider;
+
+import me.glaremasters.guilds.database.guild.NormalizedGuildProvider;
+import me.glaremasters.guilds.database.guild.NormalizedGuildRows;
+import me.glaremasters.guilds.guild.GuildIndex;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public interface GuildMySQLNormalizedProvider extends NormalizedGuildProvider {
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_schema (\n" +
+                    "  `version` INT NOT NULL,\n" +
+                    "  PRIMARY KEY (`version`));"
+    )
+    void createSchemaTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_info (\n" +
+                    "  `id` VARCHAR(36) NOT NULL,\n" +
+                    "  `name` VARCHAR(255) NOT NULL,\n" +
+                    "  `prefix` VARCHAR(255) NULL,\n" +
+                    "  `motd` TEXT NULL,\n" +
+                    "  `master` VARCHAR(36) NULL,\n" +
+                    "  `home_world` VARCHAR(255) NULL,\n" +
+                    "  `home_x` DOUBLE NULL,\n" +
+                    "  `home_y` DOUBLE NULL,\n" +
+                    "  `home_z` DOUBLE NULL,\n" +
+                    "  `home_yaw` FLOAT NULL,\n" +
+                    "  `home_pitch` FLOAT NULL,\n" +
+                    "  `skull` MEDIUMTEXT NULL,\n" +
+                    "  `status` VARCHAR(16) NULL,\n" +
+                    "  `tier` INT NOT NULL,\n" +
+                    "  `wins` INT NOT NULL,\n" +
+                    "  `loses` INT NOT NULL,\n" +
+                    "  `balance` DOUBLE NOT NULL,\n" +
+                    "  `last_defended` BIGINT NOT NULL,\n" +
+                    "  `creation_date` BIGINT NOT NULL,\n" +
+                    "  PRIMARY KEY (`id`),\n" +
+                    "  INDEX (`name`));"
+    )
+    void createInfoTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_member (\n" +
+                    "  `guild_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `uuid` VARCHAR(36) NOT NULL,\n" +
+                    "  `role` INT NOT NULL,\n" +
+                    "  `join_date` BIGINT NOT NULL,\n" +
+                    "  `last_login` BIGINT NOT NULL,\n" +
+                    "  PRIMARY KEY (`guild_id`, `uuid`),\n" +
+                    "  INDEX (`uuid`));"
+    )
+    void createMemberTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_ally (\n" +
+                    "  `guild_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `ally_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `pending` BOOLEAN NOT NULL,\n" +
+                    "  PRIMARY KEY (`guild_id`, `ally_id`, `pending`),\n" +
+                    "  INDEX (`ally_id`));"
+    )
+    void createAllyTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_invite (\n" +
+                    "  `guild_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `player` VARCHAR(36) NOT NULL,\n" +
+                    "  PRIMARY KEY (`guild_id`, `player`),\n" +
+                    "  INDEX (`player`));"
+    )
+    void createInviteTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_code (\n" +
+                    "  `guild_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `code` VARCHAR(64) NOT NULL,\n" +
+                    "  `uses` INT NOT NULL,\n" +
+                    "  `creator` VARCHAR(36) NOT NULL,\n" +
+                    "  `redeemers` TEXT NOT NULL,\n" +
+                    "  PRIMARY KEY (`guild_id`, `code`));"
+    )
+    void createCodeTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate(
+            "CREATE TABLE IF NOT EXISTS <prefix>guild_vault (\n" +
+                    "  `guild_id` VARCHAR(36) NOT NULL,\n" +
+                    "  `idx` INT NOT NULL,\n" +
+                    "  `data` MEDIUMTEXT NOT NULL,\n" +
+                    "  PRIMARY KEY (`guild_id`, `idx`));"
+    )
+    void createVaultTable(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT MAX(version) FROM <prefix>guild_schema")
+    Integer getSchemaVersion(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlUpdate("INSERT IGNORE INTO <prefix>guild_schema(version) VALUES (:version)")
+    void setSchemaVersion(@Define("prefix") @NotNull String prefix, @Bind("version") int version);
+
+    @Override
+    @SqlQuery("SELECT EXISTS(SELECT 1 FROM <prefix>guild_info WHERE id = :id)")
+    boolean guildExists(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT id FROM <prefix>guild_info")
+    List<String> getAllGuildIds(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_info")
+    @RegisterRowMapper(NormalizedGuildRows.InfoMapper.class)
+    List<NormalizedGuildRows.InfoRow> getInfoRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT id, name, prefix, status FROM <prefix>guild_info")
+    @RegisterRowMapper(NormalizedGuildRows.IndexMapper.class)
+    List<GuildIndex.Entry> getIndexRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT guild_id, uuid AS k FROM <prefix>guild_member")
+    @RegisterRowMapper(NormalizedGuildRows.KeyMapper.class)
+    List<NormalizedGuildRows.KeyRow> getMemberKeys(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT guild_id, player AS k FROM <prefix>guild_invite")
+    @RegisterRowMapper(NormalizedGuildRows.KeyMapper.class)
+    List<NormalizedGuildRows.KeyRow> getInviteKeys(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT guild_id, code AS k FROM <prefix>guild_code")
+    @RegisterRowMapper(NormalizedGuildRows.KeyMapper.class)
+    List<NormalizedGuildRows.KeyRow> getCodeKeys(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_member")
+    @RegisterRowMapper(NormalizedGuildRows.MemberMapper.class)
+    List<NormalizedGuildRows.MemberRow> getMemberRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_ally")
+    @RegisterRowMapper(NormalizedGuildRows.AllyMapper.class)
+    List<NormalizedGuildRows.AllyRow> getAllyRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_invite")
+    @RegisterRowMapper(NormalizedGuildRows.InviteMapper.class)
+    List<NormalizedGuildRows.InviteRow> getInviteRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_code")
+    @RegisterRowMapper(NormalizedGuildRows.CodeMapper.class)
+    List<NormalizedGuildRows.CodeRow> getCodeRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_vault")
+    @RegisterRowMapper(NormalizedGuildRows.VaultMapper.class)
+    List<NormalizedGuildRows.VaultRow> getVaultRows(@Define("prefix") @NotNull String prefix);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_info WHERE id = :id")
+    @RegisterRowMapper(NormalizedGuildRows.InfoMapper.class)
+    List<NormalizedGuildRows.InfoRow> getInfoRows(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_member WHERE guild_id = :id")
+    @RegisterRowMapper(NormalizedGuildRows.MemberMapper.class)
+    List<NormalizedGuildRows.MemberRow> getMemberRows(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_ally WHERE guild_id = :id")
+    @RegisterRowMapper(NormalizedGuildRows.AllyMapper.class)
+    List<NormalizedGuildRows.AllyRow> getAllyRows(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_invite WHERE guild_id = :id")
+    @RegisterRowMapper(NormalizedGuildRows.InviteMapper.class)
+    List<NormalizedGuildRows.InviteRow> getInviteRows(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_code WHERE guild_id = :id")
+    @RegisterRowMapper(NormalizedGuildRows.CodeMapper.class)
+    List<NormalizedGuildRows.CodeRow> getCodeRows(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT * FROM <prefix>guild_vault WHERE guild_id = :id")
+    @RegisterRowMapper(NormalizedGuildRows.VaultMapper.class)
+    List<NormalizedGuildRows.VaultRow> getVaultRows(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id);
+
+    @Override
+    @SqlQuery("SELECT guild_id FROM <prefix>guild_member WHERE uuid = :player LIMIT 1")
+    String getGuildIdByMember(@Define("prefix") @NotNull String prefix, @Bind("player") @NotNull String player);
+
+    @Override
+    @SqlQuery("SELECT guild_id FROM <prefix>guild_invite WHERE player = :player")
+    List<String> getGuildIdsByInvite(@Define("prefix") @NotNull String prefix, @Bind("player") @NotNull String player);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_info(id, name, prefix, motd, master, home_world, home_x, home_y, home_z, home_yaw, home_pitch, skull, status, tier, wins, loses, balance, last_defended, creation_date) " +
+            "VALUES (:id, :name, :prefix, :motd, :master, :homeWorld, :homeX, :homeY, :homeZ, :homeYaw, :homePitch, :skull, :status, :tier, :wins, :loses, :balance, :lastDefended, :creationDate) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), prefix = VALUES(prefix), motd = VALUES(motd), master = VALUES(master), home_world = VALUES(home_world), " +
+            "home_x = VALUES(home_x), home_y = VALUES(home_y), home_z = VALUES(home_z), home_yaw = VALUES(home_yaw), home_pitch = VALUES(home_pitch), skull = VALUES(skull), " +
+            "status = VALUES(status), tier = VALUES(tier), wins = VALUES(wins), loses = VALUES(loses), balance = VALUES(balance), last_defended = VALUES(last_defended), creation_date = VALUES(creation_date)")
+    void upsertInfos(@Define("prefix") @NotNull String prefix, @BindBean @NotNull List<NormalizedGuildRows.GuildInfo> infos);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_member(guild_id, uuid, role, join_date, last_login) VALUES (:guild, :uuid, :role, :joinDate, :lastLogin)")
+    void insertMembers(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull List<String> guilds, @Bind("uuid") @NotNull List<String> uuids, @Bind("role") @NotNull List<Integer> roles, @Bind("joinDate") @NotNull List<Long> joinDates, @Bind("lastLogin") @NotNull List<Long> lastLogins);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_ally(guild_id, ally_id, pending) VALUES (:guild, :ally, :pending)")
+    void insertAllies(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull List<String> guilds, @Bind("ally") @NotNull List<String> allies, @Bind("pending") @NotNull List<Boolean> pending);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_invite(guild_id, player) VALUES (:guild, :player)")
+    void insertInvites(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull List<String> guilds, @Bind("player") @NotNull List<String> players);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_code(guild_id, code, uses, creator, redeemers) VALUES (:guild, :code, :uses, :creator, :redeemers)")
+    void insertCodes(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull List<String> guilds, @Bind("code") @NotNull List<String> codes, @Bind("uses") @NotNull List<Integer> uses, @Bind("creator") @NotNull List<String> creators, @Bind("redeemers") @NotNull List<String> redeemers);
+
+    @Override
+    @SqlBatch("INSERT INTO <prefix>guild_vault(guild_id, idx, data) VALUES (:guild, :idx, :data)")
+    void insertVaults(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull List<String> guilds, @Bind("idx") @NotNull List<Integer> indexes, @Bind("data") @NotNull List<String> data);
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild_info WHERE id = :id")
+    void deleteInfos(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids);
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild_member WHERE guild_id = :id")
+    void deleteMembers(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids);
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild_ally WHERE guild_id = :id")
+    void deleteAllies(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids);
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild_invite WHERE guild_id = :id")
+    void deleteInvites(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids);
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild_code WHERE guild_id = :id")
+    void deleteCodes(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids);
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild_vault WHERE guild_id = :id")
+    void deleteVaults(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids);
+
+    @Override
+    @SqlUpdate("UPDATE <prefix>guild_info SET balance = :balance WHERE id = :id")
+    void updateBalance(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("balance") double balance);
+
+    @Override
+    @SqlUpdate("INSERT INTO <prefix>guild_member(guild_id, uuid, role, join_date, last_login) VALUES (:guild, :uuid, :role, :joinDate, :lastLogin) " +
+            "ON DUPLICATE KEY UPDATE role = VALUES(role), join_date = VALUES(join_date), last_login = VALUES(last_login)")
+    void saveMember(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull String guildId, @Bind("uuid") @NotNull String uuid, @Bind("role") int role, @Bind("joinDate") long joinDate, @Bind("lastLogin") long lastLogin);
+
+    @Override
+    @SqlUpdate("DELETE FROM <prefix>guild_member WHERE guild_id = :guild AND uuid = :uuid")
+    void deleteMember(@Define("prefix") @NotNull String prefix, @Bind("guild") @NotNull String guildId, @Bind("uuid") @NotNull String uuid);
+}
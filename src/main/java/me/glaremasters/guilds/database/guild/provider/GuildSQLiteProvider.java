@@ -27,9 +27,12 @@ package me.glaremasters.guilds.database.guild.provider;
 import me.glaremasters.guilds.database.guild.GuildProvider;
 import me.glaremasters.guilds.database.guild.GuildRowMapper;
 import me.glaremasters.guilds.guild.Guild;
+import org.jdbi.v3.core.result.ResultIterable;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.customizer.FetchSize;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jetbrains.annotations.NotNull;
@@ -57,9 +60,13 @@ public interface GuildSQLiteProvider extends GuildProvider {
     List<String> getAllGuildIds(@Define("prefix") @NotNull String tablePrefix) throws IOException;
 
     @Override
-    @SqlQuery("SELECT * FROM <prefix>guild")
-    @RegisterRowMapper(GuildRowMapper.class)
-    List<Guild> getAllGuilds(@Define("prefix") @NotNull String prefix);
+    default List<Guild> getAllGuilds(@NotNull String prefix) throws IOException {
+        return GuildRowMapper.decodeAll(streamGuildData(prefix).iterator());
+    }
+
+    @SqlQuery("SELECT data FROM <prefix>guild")
+    @FetchSize(GuildRowMapper.BATCH_SIZE)
+    ResultIterable<String> streamGuildData(@Define("prefix") @NotNull String prefix);
 
     @Override
     @SqlQuery("SELECT * FROM <prefix>guild WHERE id = :id")
@@ -74,7 +81,15 @@ public interface GuildSQLiteProvider extends GuildProvider {
     @SqlUpdate("UPDATE <prefix>guild SET data = :data WHERE id = :id")
     void updateGuild(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id, @Bind("data") @NotNull String data) throws IOException;
 
+    @Override
+    @SqlBatch("INSERT OR REPLACE INTO <prefix>guild(id, data) VALUES (:id, :data)")
+    void saveGuilds(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids, @Bind("data") @NotNull List<String> data) throws IOException;
+
     @Override
     @SqlUpdate("DELETE FROM <prefix>guild WHERE id = :id")
     void deleteGuild(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull String id) throws IOException;
+
+    @Override
+    @SqlBatch("DELETE FROM <prefix>guild WHERE id = :id")
+    void deleteGuilds(@Define("prefix") @NotNull String prefix, @Bind("id") @NotNull List<String> ids) throws IOException;
 }
@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.snapshot;
+
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.guild.Guild;
+
+import java.util.List;
+
+/**
+ * The state read back from a snapshot written on the last clean shutdown.
+ *
+ * File layout (big endian):
+ * <pre>
+ * int magic, int version, long createdAt, string backend, string tablePrefix, long storageMarker,
+ * int guilds, int arenas, int cooldowns, long crc32 of the body, int body length,
+ * deflated body
+ * </pre>
+ * Strings are an int byte length (-1 for null) followed by UTF-8 bytes, UUIDs are two longs.
+ */
+public class Snapshot {
+    public static final String FILE_NAME = "snapshot.bin";
+    static final int MAGIC = 0x47534E50;
+    static final int VERSION = 2;
+
+    private final long createdAt;
+    private final List<Guild> guilds;
+    private final List<Arena> arenas;
+    private final List<Cooldown> cooldowns;
+
+    Snapshot(long createdAt, List<Guild> guilds, List<Arena> arenas, List<Cooldown> cooldowns) {
+        this.createdAt = createdAt;
+        this.guilds = guilds;
+        this.arenas = arenas;
+        this.cooldowns = cooldowns;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public List<Guild> getGuilds() {
+        return guilds;
+    }
+
+    public List<Arena> getArenas() {
+        return arenas;
+    }
+
+    public List<Cooldown> getCooldowns() {
+        return cooldowns;
+    }
+}
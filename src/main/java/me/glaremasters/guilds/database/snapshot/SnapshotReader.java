@@ -0,0 +1,338 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.snapshot;
+
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildCode;
+import me.glaremasters.guilds.guild.GuildHome;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildRole;
+import me.glaremasters.guilds.guild.GuildScore;
+import me.glaremasters.guilds.guild.GuildSkull;
+import me.glaremasters.guilds.guild.GuildTier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads a snapshot through a memory mapped buffer, see {@link Snapshot} for the layout.
+ */
+public final class SnapshotReader {
+
+    private SnapshotReader() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Read a snapshot if it is still valid for the current storage
+     * @param file the snapshot file
+     * @param backend the name of the configured backend
+     * @param tablePrefix the configured sql table prefix, or null
+     * @param storageMarker the marker of the guild storage right now
+     * @param maxAge the oldest snapshot to accept in milliseconds
+     * @param sources json folders that must not have changed since the snapshot was taken
+     * @return the snapshot, or null if there is none or it is stale
+     * @throws IOException if the snapshot is corrupt or can't be read
+     */
+    @Nullable
+    public static Snapshot read(@NotNull File file, @NotNull String backend, @Nullable String tablePrefix, long storageMarker, long maxAge, @NotNull List<File> sources) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return read(buffer, backend, tablePrefix, storageMarker, maxAge, sources);
+        } catch (RuntimeException ex) {
+            // Bad enum names, negative sizes and the like all mean the file can't be trusted
+            throw new IOException("Snapshot is corrupt", ex);
+        } finally {
+            // Everything read was copied onto the heap, and a file that is still mapped can't be deleted or replaced on Windows
+            unmap(buffer);
+        }
+    }
+
+    private static Snapshot read(MappedByteBuffer buffer, String backend, String tablePrefix, long storageMarker, long maxAge, List<File> sources) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != Snapshot.MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        if (buffer.getInt() != Snapshot.VERSION) {
+            return null;
+        }
+        long createdAt = buffer.getLong();
+        if (!backend.equals(readString(buffer)) || !Objects.equals(tablePrefix, readString(buffer))) {
+            return null;
+        }
+        // Guilds were added or removed in the storage after the snapshot was taken
+        if (buffer.getLong() != storageMarker) {
+            return null;
+        }
+        if (System.currentTimeMillis() - createdAt > maxAge || changedSince(sources, createdAt)) {
+            return null;
+        }
+        int guildCount = buffer.getInt();
+        int arenaCount = buffer.getInt();
+        int cooldownCount = buffer.getInt();
+        long checksum = buffer.getLong();
+        int length = buffer.getInt();
+        if (length < 0 || length != buffer.remaining()) {
+            throw new IOException("Snapshot is truncated");
+        }
+        ByteBuffer body = buffer.slice();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if (crc.getValue() != checksum) {
+            throw new IOException("Snapshot checksum does not match");
+        }
+
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferInputStream(body), inflater, 64 * 1024))) {
+            List<Guild> guilds = new ArrayList<>(readCount(in, guildCount));
+            for (int i = 0; i < guildCount; i++) {
+                guilds.add(readGuild(in));
+            }
+            List<Arena> arenas = new ArrayList<>(readCount(in, arenaCount));
+            for (int i = 0; i < arenaCount; i++) {
+                arenas.add(new Arena(readUuid(in), readString(in), readString(in), readString(in), false));
+            }
+            List<Cooldown> cooldowns = new ArrayList<>(readCount(in, cooldownCount));
+            for (int i = 0; i < cooldownCount; i++) {
+                cooldowns.add(new Cooldown(readUuid(in), Cooldown.Type.valueOf(readString(in)), readUuid(in), in.readLong()));
+            }
+            return new Snapshot(createdAt, guilds, arenas, cooldowns);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Release a mapping right away instead of whenever the buffer is garbage collected.
+     * There is no public api for this, so it's done the way Java 8 and Java 9+ each allow, and skipped if neither works.
+     * The buffer and anything sliced from it must never be used afterwards.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException ex) {
+            // Java 8
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // The mapping is released once the buffer is collected
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // The mapping is released once the buffer is collected
+        }
+    }
+
+    /**
+     * Check if anything in the json folders was written after the snapshot, for example by hand while the server was off
+     */
+    private static boolean changedSince(List<File> sources, long time) {
+        for (File source : sources) {
+            if (source.lastModified() > time) {
+                return true;
+            }
+            File[] children = source.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory() ? changedSince(Collections.singletonList(child), time) : child.lastModified() > time) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int readCount(DataInputStream in, int expected) throws IOException {
+        int count = in.readInt();
+        if (count != expected) {
+            throw new IOException("Snapshot counts do not match");
+        }
+        return count;
+    }
+
+    private static Guild readGuild(DataInputStream in) throws IOException {
+        Guild.GuildBuilder builder = Guild.builder()
+                .id(readUuid(in))
+                .name(readString(in))
+                .prefix(readString(in))
+                .motd(readString(in));
+        if (in.readBoolean()) {
+            builder.guildMaster(readMember(in));
+        }
+        if (in.readBoolean()) {
+            builder.home(new GuildHome(readString(in), in.readDouble(), in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat()));
+        }
+        String skull = readString(in);
+        if (skull != null) {
+            builder.guildSkull(GuildSkull.fromSerialized(skull));
+        }
+        byte status = in.readByte();
+        if (status >= 0) {
+            builder.status(Guild.Status.values()[status]);
+        }
+        if (in.readBoolean()) {
+            builder.tier(GuildTier.builder().level(in.readInt()).build());
+        }
+        GuildScore score = new GuildScore();
+        score.setWins(in.readInt());
+        score.setLoses(in.readInt());
+        builder.guildScore(score);
+        builder.balance(in.readDouble());
+        int memberCount = in.readInt();
+        List<GuildMember> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            members.add(readMember(in));
+        }
+        builder.members(members);
+        builder.invitedMembers(readUuids(in));
+        builder.allies(readUuids(in));
+        builder.pendingAllies(readUuids(in));
+        int codeCount = in.readInt();
+        List<GuildCode> codes = new ArrayList<>(codeCount);
+        for (int i = 0; i < codeCount; i++) {
+            codes.add(new GuildCode(readString(in), in.readInt(), readUuid(in), readUuids(in)));
+        }
+        builder.codes(codes);
+        int vaultCount = in.readInt();
+        List<String> vaults = new ArrayList<>(vaultCount);
+        for (int i = 0; i < vaultCount; i++) {
+            vaults.add(readString(in));
+        }
+        builder.vaults(vaults);
+        builder.lastDefended(in.readLong());
+        Guild guild = builder.build();
+        guild.setCreationDate(in.readLong());
+        if (!in.readBoolean()) {
+            guild.markClean();
+        }
+        return guild;
+    }
+
+    private static GuildMember readMember(DataInputStream in) throws IOException {
+        GuildMember member = new GuildMember(readUuid(in), new GuildRole("", "", in.readInt()));
+        member.setJoinDate(in.readLong());
+        member.setLastLogin(in.readLong());
+        return member;
+    }
+
+    private static List<UUID> readUuids(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<UUID> uuids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uuids.add(readUuid(in));
+        }
+        return uuids;
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Feeds the mapped body to the inflater without copying it onto the heap first
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.snapshot;
+
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.database.AtomicFileWriter;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildCode;
+import me.glaremasters.guilds.guild.GuildHome;
+import me.glaremasters.guilds.guild.GuildMember;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the whole in-memory state into one compressed binary file, see {@link Snapshot} for the layout.
+ */
+public final class SnapshotWriter {
+
+    private SnapshotWriter() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Write a snapshot, replacing any existing one
+     * @param file the snapshot file
+     * @param backend the name of the backend the data was saved to
+     * @param tablePrefix the sql table prefix, or null
+     * @param storageMarker the marker of the guild storage the data was saved to
+     * @param guilds the guilds
+     * @param arenas the arenas
+     * @param cooldowns the cooldowns
+     * @throws IOException if the file can't be written
+     */
+    public static void write(@NotNull File file, @NotNull String backend, @Nullable String tablePrefix, long storageMarker, @NotNull Collection<Guild> guilds, @NotNull Collection<Arena> arenas, @NotNull Collection<Cooldown> cooldowns) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(body, deflater, 64 * 1024))) {
+            out.writeInt(guilds.size());
+            for (Guild guild : guilds) {
+                writeGuild(out, guild);
+            }
+            out.writeInt(arenas.size());
+            for (Arena arena : arenas) {
+                writeUuid(out, arena.getId());
+                writeString(out, arena.getName());
+                writeString(out, arena.getChallenger());
+                writeString(out, arena.getDefender());
+            }
+            out.writeInt(cooldowns.size());
+            for (Cooldown cooldown : cooldowns) {
+                writeUuid(out, cooldown.getCooldownId());
+                writeString(out, cooldown.getCooldownType().name());
+                writeUuid(out, cooldown.getCooldownOwner());
+                out.writeLong(cooldown.getCooldownExpiry());
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] compressed = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, compressed.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(Snapshot.MAGIC);
+            out.writeInt(Snapshot.VERSION);
+            out.writeLong(System.currentTimeMillis());
+            writeString(out, backend);
+            writeString(out, tablePrefix);
+            out.writeLong(storageMarker);
+            out.writeInt(guilds.size());
+            out.writeInt(arenas.size());
+            out.writeInt(cooldowns.size());
+            out.writeLong(crc.getValue());
+            out.writeInt(compressed.length);
+            out.write(compressed);
+        }
+        AtomicFileWriter.writeNow(file.toPath(), bytes.toByteArray());
+    }
+
+    private static void writeGuild(DataOutputStream out, Guild guild) throws IOException {
+        writeUuid(out, guild.getId());
+        writeString(out, guild.getName());
+        writeString(out, guild.getPrefix());
+        writeString(out, guild.getMotd());
+        out.writeBoolean(guild.getGuildMaster() != null);
+        if (guild.getGuildMaster() != null) {
+            writeMember(out, guild.getGuildMaster());
+        }
+        GuildHome home = guild.getHome();
+        out.writeBoolean(home != null);
+        if (home != null) {
+            writeString(out, home.getWorld());
+            out.writeDouble(home.getX());
+            out.writeDouble(home.getY());
+            out.writeDouble(home.getZ());
+            out.writeFloat(home.getYaw());
+            out.writeFloat(home.getPitch());
+        }
+        writeString(out, guild.getGuildSkull() == null ? null : guild.getGuildSkull().getSerialized());
+        out.writeByte(guild.getStatus() == null ? -1 : guild.getStatus().ordinal());
+        out.writeBoolean(guild.getTier() != null);
+        if (guild.getTier() != null) {
+            out.writeInt(guild.getTier().getLevel());
+        }
+        out.writeInt(guild.getGuildScore().getWins());
+        out.writeInt(guild.getGuildScore().getLoses());
+        out.writeDouble(guild.getBalance());
+        List<GuildMember> members = guild.getMembers();
+        out.writeInt(members.size());
+        for (GuildMember member : members) {
+            writeMember(out, member);
+        }
+        writeUuids(out, guild.getInvitedMembers());
+        writeUuids(out, guild.getAllies());
+        writeUuids(out, guild.getPendingAllies());
+        List<GuildCode> codes = guild.getCodes();
+        out.writeInt(codes.size());
+        for (GuildCode code : codes) {
+            writeString(out, code.getId());
+            out.writeInt(code.getUses());
+            writeUuid(out, code.getCreator());
+            writeUuids(out, code.getRedeemers());
+        }
+        List<String> vaults = guild.getVaults();
+        out.writeInt(vaults.size());
+        for (String vault : vaults) {
+            writeString(out, vault);
+        }
+        out.writeLong(guild.getLastDefended());
+        out.writeLong(guild.getCreationDate());
+        // Keep changes that didn't make it into the storage so they get saved on the next interval
+        out.writeBoolean(guild.isDirty());
+    }
+
+    private static void writeMember(DataOutputStream out, GuildMember member) throws IOException {
+        writeUuid(out, member.getUuid());
+        out.writeInt(member.getRole().getLevel());
+        out.writeLong(member.getJoinDate());
+        out.writeLong(member.getLastLogin());
+    }
+
+    private static void writeUuids(DataOutputStream out, List<UUID> uuids) throws IOException {
+        out.writeInt(uuids.size());
+        for (UUID uuid : uuids) {
+            writeUuid(out, uuid);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps track of the ally relationships between guilds.
+ * Allies are stored as symmetric adjacency sets, pending requests are stored in both directions
+ * so a deleted guild can be cleaned up by only visiting it's own neighbours.
+ */
+public class AllyGraph {
+
+    private final Map<UUID, Set<UUID>> allies = new ConcurrentHashMap<>();
+    // guild -> guilds that sent it a request
+    private final Map<UUID, Set<UUID>> pending = new ConcurrentHashMap<>();
+    // guild -> guilds it has sent a request to
+    private final Map<UUID, Set<UUID>> requested = new ConcurrentHashMap<>();
+    private final Function<UUID, Guild> resolver;
+
+    /**
+     * Create a new ally graph
+     * @param resolver the function used to get a guild by it's id
+     */
+    public AllyGraph(@NotNull Function<UUID, Guild> resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Add a guild to the graph using it's current allies and pending allies
+     * @param guild the guild being added
+     */
+    public void add(@NotNull Guild guild) {
+        guild.setAllyGraph(this);
+        guild.getAllies().forEach(ally -> link(guild.getId(), ally));
+        guild.getPendingAllies().forEach(from -> request(from, guild.getId()));
+    }
+
+    /**
+     * Remove a guild from the graph and from the allies and pending allies of every guild connected to it
+     * @param guild the guild being removed
+     */
+    public void remove(@NotNull Guild guild) {
+        UUID id = guild.getId();
+
+        Set<UUID> neighbours = allies.remove(id);
+        if (neighbours != null) {
+            for (UUID neighbour : neighbours) {
+                neighbourSet(allies, neighbour).remove(id);
+                Guild other = resolver.apply(neighbour);
+                if (other != null && other.getAllies().remove(id)) {
+                    other.markDirty();
+                }
+            }
+        }
+
+        Set<UUID> targets = requested.remove(id);
+        if (targets != null) {
+            for (UUID target : targets) {
+                neighbourSet(pending, target).remove(id);
+                Guild other = resolver.apply(target);
+                if (other != null && other.getPendingAllies().remove(id)) {
+                    other.markDirty();
+                }
+            }
+        }
+
+        Set<UUID> senders = pending.remove(id);
+        if (senders != null) {
+            for (UUID sender : senders) {
+                neighbourSet(requested, sender).remove(id);
+            }
+        }
+
+        guild.setAllyGraph(null);
+    }
+
+    /**
+     * Check if two guilds are allies
+     * @param guild the first guild
+     * @param target the second guild
+     * @return allies or not
+     */
+    public boolean isAlly(@NotNull UUID guild, @NotNull UUID target) {
+        Set<UUID> set = allies.get(guild);
+        return set != null && set.contains(target);
+    }
+
+    /**
+     * Check if a guild has a pending ally request from another guild
+     * @param guild the guild that received the request
+     * @param from the guild that sent the request
+     * @return pending or not
+     */
+    public boolean isPending(@NotNull UUID guild, @NotNull UUID from) {
+        Set<UUID> set = pending.get(guild);
+        return set != null && set.contains(from);
+    }
+
+    /**
+     * Get the allies of a guild
+     * @param guild the guild
+     * @return unmodifiable set of ally ids
+     */
+    public Set<UUID> getAllies(@NotNull UUID guild) {
+        Set<UUID> set = allies.get(guild);
+        return set == null ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    void link(@NotNull UUID guild, @NotNull UUID target) {
+        neighbourSet(allies, guild).add(target);
+        neighbourSet(allies, target).add(guild);
+    }
+
+    void unlink(@NotNull UUID guild, @NotNull UUID target) {
+        neighbourSet(allies, guild).remove(target);
+        neighbourSet(allies, target).remove(guild);
+    }
+
+    void request(@NotNull UUID from, @NotNull UUID target) {
+        neighbourSet(pending, target).add(from);
+        neighbourSet(requested, from).add(target);
+    }
+
+    void unrequest(@NotNull UUID from, @NotNull UUID target) {
+        neighbourSet(pending, target).remove(from);
+        neighbourSet(requested, from).remove(target);
+    }
+
+    private static Set<UUID> neighbourSet(Map<UUID, Set<UUID>> map, UUID guild) {
+        return map.computeIfAbsent(guild, k -> ConcurrentHashMap.newKeySet());
+    }
+}
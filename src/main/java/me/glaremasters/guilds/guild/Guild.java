@@ -42,7 +42,9 @@ import org.bukkit.potion.PotionEffectType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class Guild {
@@ -77,71 +79,119 @@ public class Guild {
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        if (registry != null) {
+            registry.rename(this, oldName, name);
+        }
+        markDirty();
     }
 
     public void setPrefix(String prefix) {
+        String oldPrefix = this.prefix;
         this.prefix = prefix;
+        if (registry != null) {
+            registry.changePrefix(this, oldPrefix, prefix);
+        }
+        markDirty();
     }
 
     public void setMotd(String motd) {
         this.motd = motd;
+        markDirty();
     }
 
     public void setGuildMaster(GuildMember guildMaster) {
         this.guildMaster = guildMaster;
+        markDirty();
     }
 
     public void setHome(GuildHome home) {
         this.home = home;
+        markDirty();
     }
 
     public void setGuildSkull(GuildSkull guildSkull) {
         this.guildSkull = guildSkull;
+        markDirty();
     }
 
     public void setStatus(Status status) {
         this.status = status;
+        markDirty();
     }
 
     public void setTier(GuildTier tier) {
         this.tier = tier;
+        markDirty();
     }
 
     public void setGuildScore(GuildScore guildScore) {
         this.guildScore = guildScore;
+        markDirty();
     }
 
     public void setBalance(double balance) {
         this.balance = balance;
+        GuildRegistry current = registry;
+        if (current == null || !current.balanceChanged(this)) {
+            markDirty();
+        }
     }
 
     public void setMembers(List<GuildMember> members) {
+        if (registry != null) {
+            getMembers().forEach(m -> registry.unindexMember(m.getUuid(), this));
+        }
         this.members = members;
+        this.memberIndex = buildMemberIndex();
+        this.online = null;
+        if (registry != null) {
+            getMembers().forEach(m -> registry.indexMember(m.getUuid(), this));
+        }
+        markDirty();
     }
 
     public void setInvitedMembers(List<UUID> invitedMembers) {
         this.invitedMembers = invitedMembers;
+        markDirty();
     }
 
     public void setAllies(List<UUID> allies) {
+        if (allyGraph != null) {
+            getAllies().forEach(a -> allyGraph.unlink(id, a));
+        }
         this.allies = allies;
+        if (allyGraph != null) {
+            getAllies().forEach(a -> allyGraph.link(id, a));
+        }
+        markDirty();
     }
 
     public void setPendingAllies(List<UUID> pendingAllies) {
+        if (allyGraph != null) {
+            getPendingAllies().forEach(p -> allyGraph.unrequest(p, id));
+        }
         this.pendingAllies = pendingAllies;
+        if (allyGraph != null) {
+            getPendingAllies().forEach(p -> allyGraph.request(p, id));
+        }
+        markDirty();
     }
 
     public void setCodes(List<GuildCode> codes) {
         this.codes = codes;
+        markDirty();
     }
 
     public void setVaults(List<String> vaults) {
         this.vaults = vaults;
+        markDirty();
     }
 
     public void setLastDefended(long lastDefended) {
         this.lastDefended = lastDefended;
+        markDirty();
     }
 
     public long getCreationDate() {
@@ -150,6 +200,7 @@ public class Guild {
 
     public void setCreationDate(long creationDate) {
         this.creationDate = creationDate;
+        markDirty();
     }
 
     public enum Status {
@@ -184,13 +235,59 @@ public class Guild {
     private long lastDefended;
     private long creationDate;
 
+    private transient GuildRegistry registry;
+    private transient volatile Map<UUID, GuildMember> memberIndex;
+    private transient AllyGraph allyGraph;
+    private transient volatile Map<UUID, Player> online;
+    // New guilds start out dirty, the storage adapter marks loaded ones clean
+    private transient volatile boolean dirty = true;
+
     /**
      * Get a member in the guild
      * @param uuid the uuid of the member
      * @return the member which was found
      */
     public GuildMember getMember(UUID uuid) {
-        return members.stream().filter(m -> m.getUuid().equals(uuid)).findFirst().orElse(null);
+        return getMemberIndex().get(uuid);
+    }
+
+    /**
+     * Check if a player is a member of the guild
+     * @param uuid the uuid of the player
+     * @return if the player is a member
+     */
+    public boolean isMember(UUID uuid) {
+        return getMemberIndex().containsKey(uuid);
+    }
+
+    /**
+     * Get the lookup map of members by uuid, building it from the member list if needed.
+     * The list stays the serialized form so existing data keeps loading as is, the order of members is kept by the list.
+     * It's built when the guild is registered, and otherwise at most once even if several threads ask for it at the same time,
+     * since chat and pre-login look members up off the main thread.
+     * @return members keyed by uuid
+     */
+    private Map<UUID, GuildMember> getMemberIndex() {
+        Map<UUID, GuildMember> index = memberIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = memberIndex;
+                if (index == null) {
+                    index = buildMemberIndex();
+                    memberIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<UUID, GuildMember> buildMemberIndex() {
+        Map<UUID, GuildMember> index = new ConcurrentHashMap<>();
+        for (GuildMember member : getMembers()) {
+            index.putIfAbsent(member.getUuid(), member);
+            member.setOwner(this);
+        }
+        return index;
     }
 
     /**
@@ -208,10 +305,19 @@ public class Guild {
      * @param guildHandler guild handler
      */
     public void addMember(OfflinePlayer player, GuildHandler guildHandler) {
+        if (isMember(player.getUniqueId())) return;
         GuildMember member = new GuildMember(player.getUniqueId(), guildHandler.getLowestGuildRole());
-        if (members.contains(member)) return;
         removeInvitedMember(member.getUuid());
         members.add(member);
+        getMemberIndex().put(member.getUuid(), member);
+        member.setOwner(this);
+        Player onlinePlayer = player.getPlayer();
+        if (onlinePlayer != null) {
+            getOnlineIndex().put(member.getUuid(), onlinePlayer);
+        }
+        if (registry != null) {
+            registry.indexMember(member.getUuid(), this);
+        }
         member.setJoinDate(System.currentTimeMillis());
     }
 
@@ -220,7 +326,18 @@ public class Guild {
      * @param guildMember
      */
     public void addMemberByCode(GuildMember guildMember) {
+        if (isMember(guildMember.getUuid())) return;
         members.add(guildMember);
+        getMemberIndex().put(guildMember.getUuid(), guildMember);
+        guildMember.setOwner(this);
+        Player onlinePlayer = guildMember.getAsPlayer();
+        if (onlinePlayer != null) {
+            getOnlineIndex().put(guildMember.getUuid(), onlinePlayer);
+        }
+        if (registry != null) {
+            registry.indexMember(guildMember.getUuid(), this);
+        }
+        memberChanged(guildMember);
     }
 
     /**
@@ -228,7 +345,20 @@ public class Guild {
      * @param guildMember the guildmember to remove
      */
     public void removeMember(GuildMember guildMember){
-        members.remove(guildMember);
+        if (guildMember == null || !members.remove(guildMember)) return;
+        getMemberIndex().remove(guildMember.getUuid(), guildMember);
+        Map<UUID, Player> index = online;
+        if (index != null) {
+            index.remove(guildMember.getUuid());
+        }
+        if (registry != null) {
+            registry.unindexMember(guildMember.getUuid(), this);
+        }
+        guildMember.setOwner(null);
+        GuildRegistry current = registry;
+        if (current == null || !current.memberRemoved(this, guildMember.getUuid())) {
+            markDirty();
+        }
     }
 
     /**
@@ -245,6 +375,10 @@ public class Guild {
      */
     public void removeAlly(Guild guild) {
         allies.remove(guild.getId());
+        if (allyGraph != null) {
+            allyGraph.unlink(id, guild.getId());
+        }
+        markDirty();
     }
 
     /**
@@ -252,7 +386,12 @@ public class Guild {
      * @param guild the guild to add
      */
     public void addAlly(Guild guild) {
+        if (allies.contains(guild.getId())) return;
         allies.add(guild.getId());
+        if (allyGraph != null) {
+            allyGraph.link(id, guild.getId());
+        }
+        markDirty();
     }
 
     /**
@@ -276,7 +415,12 @@ public class Guild {
      * @param guild the guild to add
      */
     public void addPendingAlly(Guild guild) {
+        if (isAllyPending(guild)) return;
         pendingAllies.add(guild.getId());
+        if (allyGraph != null) {
+            allyGraph.request(guild.getId(), id);
+        }
+        markDirty();
     }
 
     /**
@@ -285,6 +429,9 @@ public class Guild {
      * @return if they have a pending invite
      */
     public boolean isAllyPending(Guild guild) {
+        if (allyGraph != null) {
+            return allyGraph.isPending(id, guild.getId());
+        }
         return pendingAllies.contains(guild.getId());
     }
 
@@ -294,6 +441,10 @@ public class Guild {
      */
     public void removePendingAlly(Guild guild) {
         pendingAllies.remove(guild.getId());
+        if (allyGraph != null) {
+            allyGraph.unrequest(guild.getId(), id);
+        }
+        markDirty();
     }
 
     /**
@@ -304,6 +455,7 @@ public class Guild {
     public void inviteMember(UUID uuid) {
         if (invitedMembers.contains(uuid)) return;
         invitedMembers.add(uuid);
+        markDirty();
     }
 
     /**
@@ -321,7 +473,9 @@ public class Guild {
      * @param uuid the member to remove from the invites.
      */
     public void removeInvitedMember(UUID uuid) {
-        invitedMembers.remove(uuid);
+        if (invitedMembers.remove(uuid)) {
+            markDirty();
+        }
     }
 
     /**
@@ -338,7 +492,14 @@ public class Guild {
      * @return a List of online members
      */
     public List<GuildMember> getOnlineMembers() {
-        return members.stream().filter(GuildMember::isOnline).collect(Collectors.toList());
+        List<GuildMember> list = new ArrayList<>();
+        for (UUID uuid : getOnlineIndex().keySet()) {
+            GuildMember member = getMember(uuid);
+            if (member != null) {
+                list.add(member);
+            }
+        }
+        return list;
     }
 
     /**
@@ -346,7 +507,7 @@ public class Guild {
      * @return list of players
      */
     public List<Player> getOnlineAsPlayers() {
-        return getOnlineMembers().stream().map(m -> Bukkit.getPlayer(m.getUuid())).collect(Collectors.toList());
+        return new ArrayList<>(getOnlineIndex().values());
     }
 
     /**
@@ -354,7 +515,62 @@ public class Guild {
      * @return list of UUIDs
      */
     public List<UUID> getOnlineAsUUIDs() {
-        return getOnlineMembers().stream().map(GuildMember::getUuid).collect(Collectors.toList());
+        return new ArrayList<>(getOnlineIndex().keySet());
+    }
+
+    /**
+     * Get the amount of online members
+     * @return amount online
+     */
+    public int getOnlineCount() {
+        return getOnlineIndex().size();
+    }
+
+    /**
+     * Mark a member of the guild as online
+     * @param player the player that joined
+     */
+    void setOnline(Player player) {
+        if (isMember(player.getUniqueId())) {
+            getOnlineIndex().put(player.getUniqueId(), player);
+        }
+    }
+
+    /**
+     * Mark a member of the guild as offline
+     * @param uuid the uuid of the player that left
+     */
+    void setOffline(UUID uuid) {
+        Map<UUID, Player> index = online;
+        if (index != null) {
+            index.remove(uuid);
+        }
+    }
+
+    /**
+     * Get the online members of the guild, looking them up from the server the first time it's needed.
+     * After that it's kept up to date by join / quit and membership changes.
+     * Like the member index it's only built once, since async chat reads it off the main thread.
+     * @return online players keyed by uuid
+     */
+    private Map<UUID, Player> getOnlineIndex() {
+        Map<UUID, Player> index = online;
+        if (index == null) {
+            synchronized (this) {
+                index = online;
+                if (index == null) {
+                    index = new ConcurrentHashMap<>();
+                    for (GuildMember member : getMembers()) {
+                        Player player = Bukkit.getPlayer(member.getUuid());
+                        if (player != null) {
+                            index.put(member.getUuid(), player);
+                        }
+                    }
+                    online = index;
+                }
+            }
+        }
+        return index;
     }
 
     /**
@@ -399,6 +615,7 @@ public class Guild {
      */
     public void addCode(String code, int uses, Player creator) {
         codes.add(new GuildCode(code, uses, creator.getUniqueId(), new ArrayList<>()));
+        markDirty();
     }
 
     /**
@@ -406,7 +623,9 @@ public class Guild {
      * @param code the code being checked
      */
     public void removeCode(String code) {
-        codes.removeIf(s -> s.getId().equals(code));
+        if (codes.removeIf(s -> s.getId().equals(code))) {
+            markDirty();
+        }
     }
 
     /**
@@ -441,7 +660,7 @@ public class Guild {
      * @param replacements any args we need to handle
      */
     public void sendMessage(CommandManager manager, Messages key, String... replacements) {
-        getOnlineMembers().forEach(m -> manager.getCommandIssuer(Bukkit.getPlayer(m.getUuid())).sendInfo(key, replacements));
+        getOnlineIndex().values().forEach(p -> manager.getCommandIssuer(p).sendInfo(key, replacements));
     }
 
     /**
@@ -449,7 +668,7 @@ public class Guild {
      * @param message the message to send
      */
     public void sendMessage(String message) {
-        getOnlineAsPlayers().forEach(m -> m.sendMessage(message));
+        getOnlineIndex().values().forEach(m -> m.sendMessage(message));
     }
 
     /**
@@ -573,6 +792,7 @@ public class Guild {
             } catch (Exception ex) {
                 guildSkull = new GuildSkull(settingsManager.getProperty(GuildListSettings.GUILD_LIST_HEAD_DEFAULT_URL));
             }
+            markDirty();
         }).execute();
     }
 
@@ -673,6 +893,59 @@ public class Guild {
         return lastDefended;
     }
 
+    /**
+     * Flag the guild as changed so it's written on the next save, and let the registry know about it
+     */
+    public void markDirty() {
+        dirty = true;
+        GuildRegistry current = registry;
+        if (current != null) {
+            current.changed(this);
+        }
+    }
+
+    /**
+     * Flag the guild as changed because one of its members joined or had their role or dates changed,
+     * unless the storage writes the member on its own
+     * @param member the member that changed
+     */
+    void memberChanged(GuildMember member) {
+        GuildRegistry current = registry;
+        if (current == null || !current.memberChanged(this, member)) {
+            markDirty();
+        }
+    }
+
+    /**
+     * Clear the changed flag, called right before the guild is serialized for saving
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    /**
+     * Check if the guild has changed since it was last saved
+     * @return changed or not
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Attach the registry that keeps the lookup indexes for this guild
+     * @param registry the guild registry, or null to detach
+     */
+    void setRegistry(GuildRegistry registry) {
+        this.registry = registry;
+        if (registry != null) {
+            getMemberIndex();
+        }
+    }
+
+    void setAllyGraph(AllyGraph allyGraph) {
+        this.allyGraph = allyGraph;
+    }
+
     public static class GuildBuilder {
         private UUID id;
         private String name;
@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Gets told about changes to guilds in the {@link GuildRegistry}. Every change that marks a guild dirty calls
+ * {@link #changed(Guild)}. The more specific methods are called first and are there for storage that can write
+ * a single change on its own, if one of them returns true the guild isn't marked dirty for that change.
+ */
+@FunctionalInterface
+public interface GuildChangeListener {
+
+    /**
+     * Called every time a guild is marked dirty
+     * @param guild the guild that changed
+     */
+    void changed(@NotNull Guild guild);
+
+    /**
+     * Called after the balance of a guild changed
+     * @param guild the guild that changed
+     * @return true if the change is written on its own and the guild doesn't need to be written again for it
+     */
+    default boolean balanceChanged(@NotNull Guild guild) {
+        return false;
+    }
+
+    /**
+     * Called after a member joined a guild or had their role, join date or last login changed
+     * @param guild the guild of the member
+     * @param member the member that changed
+     * @return true if the change is written on its own and the guild doesn't need to be written again for it
+     */
+    default boolean memberChanged(@NotNull Guild guild, @NotNull GuildMember member) {
+        return false;
+    }
+
+    /**
+     * Called after a member left a guild
+     * @param guild the guild the member left
+     * @param uuid the uuid of the member
+     * @return true if the change is written on its own and the guild doesn't need to be written again for it
+     */
+    default boolean memberRemoved(@NotNull Guild guild, @NotNull UUID uuid) {
+        return false;
+    }
+}
@@ -31,13 +31,17 @@ import co.aikar.commands.CommandManager;
 import me.glaremasters.guilds.Guilds;
 import me.glaremasters.guilds.configuration.sections.GuildSettings;
 import me.glaremasters.guilds.configuration.sections.GuildVaultSettings;
+import me.glaremasters.guilds.configuration.sections.StorageSettings;
 import me.glaremasters.guilds.configuration.sections.TicketSettings;
+import me.glaremasters.guilds.database.guild.GuildAdapter;
+import me.glaremasters.guilds.database.guild.GuildWriteQueue;
+import me.glaremasters.guilds.database.snapshot.Snapshot;
 import me.glaremasters.guilds.exceptions.ExpectationNotMet;
 import me.glaremasters.guilds.messages.Messages;
 import me.glaremasters.guilds.utils.ClaimUtils;
 import me.glaremasters.guilds.utils.ItemBuilder;
 import me.glaremasters.guilds.utils.LoggingUtils;
-import me.glaremasters.guilds.utils.Serialization;
+import me.glaremasters.guilds.utils.ParallelUtils;
 import me.glaremasters.guilds.utils.StringUtils;
 import net.milkbowl.vault.permission.Permission;
 import org.bukkit.Bukkit;
@@ -45,44 +49,73 @@ import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.codemc.worldguardwrapper.WorldGuardWrapper;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class GuildHandler {
 
+    // How long copying vaults for a save may take per tick
+    private static final long VAULT_COPY_BUDGET = TimeUnit.MILLISECONDS.toNanos(2);
+    // How long a guild prefetched for a joining player is kept loaded while the player finishes logging in
+    private static final long PREFETCH_PIN = TimeUnit.MINUTES.toMillis(1);
+
     private final Guilds guildsPlugin;
     private final SettingsManager settingsManager;
-    private final List<Guild> guilds = new ArrayList<>();
-    private final List<GuildRole> roles = new ArrayList<>();
-    private final List<GuildTier> tiers = new ArrayList<>();
-    private final List<Player> spies = new ArrayList<>();
-    private final List<Player> guildChat = new ArrayList<>();
-
-    private final Map<Guild, List<Inventory>> vaults = new HashMap<>();
+    private final GuildRegistry registry = new GuildRegistry();
+    // Allies are resolved through getGuild so unloaded allies get loaded when the graph needs them
+    private final AllyGraph allyGraph = new AllyGraph(this::getGuild);
+    private volatile LevelIndex<GuildRole> roles = new LevelIndex<>(new ArrayList<>(), GuildRole::getLevel, true);
+    private volatile LevelIndex<GuildTier> tiers = new LevelIndex<>(new ArrayList<>(), GuildTier::getLevel, false);
+    private final List<Player> spies = new CopyOnWriteArrayList<>();
+    private final List<Player> guildChat = new CopyOnWriteArrayList<>();
+
+    private final VaultCache vaultCache;
     private final List<Player> opened = new ArrayList<>();
 
     private boolean migrating = false;
 
+    // Only set when guilds are loaded on demand, see loadGuild(UUID)
+    private final boolean lazy;
+    private final GuildIndex index = new GuildIndex();
+    private final Map<UUID, Long> lastUsed = new ConcurrentHashMap<>();
+    // Unloaded guilds whose changes are still being written, reused if they are needed again before that finishes
+    private final Map<UUID, Guild> flushing = new ConcurrentHashMap<>();
+    // Guild id -> time until which it isn't unloaded, for guilds of players that are still logging in
+    private final Map<UUID, Long> pinned = new ConcurrentHashMap<>();
+    private final Object loadLock = new Object();
+
+    // Null when changed guilds are only written on the save interval
+    private GuildWriteQueue writeQueue;
+
     //as well as guild permissions from tiers using permission field and tiers list.
 
     public GuildHandler(Guilds guildsPlugin, SettingsManager settingsManager) {
         this.guildsPlugin = guildsPlugin;
         this.settingsManager = settingsManager;
+        this.vaultCache = new VaultCache(settingsManager);
+        this.lazy = settingsManager.getProperty(StorageSettings.LAZY_LOADING);
 
         loadRoles();
         loadTiers();
@@ -91,41 +124,113 @@ public class GuildHandler {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        // Started after loading so repairing loaded guilds doesn't fill the queue or the journal
+        if (settingsManager.getProperty(StorageSettings.WRITE_BEHIND_ENABLED)) {
+            writeQueue = new GuildWriteQueue(() -> guildsPlugin.getDatabase().getGuildAdapter(), this::isMigrating,
+                    g -> registry.getById(g.getId()) == g, settingsManager.getProperty(StorageSettings.WRITE_BEHIND_WINDOW));
+        }
+        registry.setChangeListener(new StorageListener());
+    }
+
+    /**
+     * Write the changes still waiting in the write queue, giving up after the configured timeout.
+     * Anything left over is written by the regular save.
+     */
+    public void drainWriteQueue() {
+        registry.setChangeListener(null);
+        if (writeQueue == null) {
+            return;
+        }
+        int timeout = settingsManager.getProperty(StorageSettings.WRITE_BEHIND_SHUTDOWN_TIMEOUT);
+        if (!writeQueue.drain(timeout, TimeUnit.SECONDS)) {
+            LoggingUtils.warn("Not all queued guild changes were written within " + timeout + " seconds, saving the rest now");
+        }
+        LoggingUtils.info(String.format("Write queue: %d guilds written in %d flushes, %.1f changes per write, %dms average delay",
+                writeQueue.getWritten(), writeQueue.getFlushes(), writeQueue.getCoalescingRatio(), writeQueue.getAverageLatency()));
     }
 
     private void loadGuilds() throws IOException {
-        // Add to the list
-        guilds.addAll(guildsPlugin.getDatabase().getGuildAdapter().getAllGuilds());
-        // Loop through each guild and set the data needed
-        for (Guild guild : guilds) {
-            // Create the vault cache
-            createVaultCache(guild);
-            // Create a temp tier object for the guild
-            GuildTier tier = getGuildTier(guild.getTier().getLevel());
-            if (tier != null) {
-                // Set the tier object
-                guild.setTier(tier);
+        long start = System.currentTimeMillis();
+        if (lazy) {
+            // Only the lookup keys, the guilds themselves are loaded when they are first used
+            List<GuildIndex.Entry> entries = guildsPlugin.getDatabase().getGuildAdapter().getGuildIndex();
+            entries.forEach(index::put);
+            LoggingUtils.info("Indexed " + entries.size() + " guilds in " + (System.currentTimeMillis() - start) + "ms, they will be loaded when they are used");
+            return;
+        }
+        // Read and parse all the guilds, unless they came with the shutdown snapshot
+        Snapshot snapshot = guildsPlugin.getSnapshot();
+        List<Guild> loaded = snapshot != null ? snapshot.getGuilds() : guildsPlugin.getDatabase().getGuildAdapter().getAllGuilds();
+        long read = System.currentTimeMillis();
+        // Add to the registry first so rebinding can tell which allies still exist
+        registry.addAll(loaded);
+        long indexed = System.currentTimeMillis();
+        // Point every guild at the loaded tier and role objects, each guild is independent so this runs in parallel
+        ParallelUtils.forEach(loaded, this::rebindGuild);
+        // Only link the allies that are left after rebinding
+        loaded.forEach(allyGraph::add);
+        long done = System.currentTimeMillis();
+        LoggingUtils.info("Loaded " + loaded.size() + " guilds" + (snapshot != null ? " from snapshot" : "") + " in " + (done - start) + "ms (read: " + (read - start) + "ms, index: " + (indexed - read) + "ms, rebind: " + (done - indexed) + "ms)");
+    }
+
+    /**
+     * Set the tier and role objects of a freshly loaded guild and fix any missing data
+     *
+     * @param guild the guild being loaded
+     */
+    private void rebindGuild(Guild guild) {
+        // A guild restored from the snapshot may still have changes that were never saved, keep those dirty
+        boolean wasDirty = guild.isDirty();
+        // Track if anything had to be fixed so the guild gets saved again
+        boolean repaired = false;
+        // Create a temp tier object for the guild
+        GuildTier tier = getGuildTier(guild.getTier().getLevel());
+        if (tier != null) {
+            // Set the tier object
+            guild.setTier(tier);
+        } else {
+            repaired = true;
+            guild.setTier(getLowestGuildTier());
+            LoggingUtils.severe("The guild (" + guild.getName() + ") had a tier level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest tier level on the server.");
+        }
+        // Check creation date
+        if (guild.getCreationDate() == 0) {
+            repaired = true;
+            guild.setCreationDate(System.currentTimeMillis());
+        }
+        // Loop through each member.
+        for (GuildMember member : guild.getMembers()) {
+            // Create a temp role
+            GuildRole role = getGuildRole(member.getRole().getLevel());
+            if (role != null) {
+                // Set each member to their role
+                member.setRole(role);
             } else {
-                guild.setTier(getLowestGuildTier());
-                LoggingUtils.severe("The guild (" + guild.getName() + ") had a tier level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest tier level on the server.");
-            }
-            // Check creation date
-            if (guild.getCreationDate() == 0) {
-                guild.setCreationDate(System.currentTimeMillis());
-            }
-            // Loop through each member.
-            for (GuildMember member : guild.getMembers()) {
-                // Create a temp role
-                GuildRole role = getGuildRole(member.getRole().getLevel());
-                if (role != null) {
-                    // Set each member to their role
-                    member.setRole(role);
-                } else {
-                    member.setRole(getLowestGuildRole());
-                    LoggingUtils.severe("The player (" + member.getName() + ") had a role level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest role level on the server.");
-                }
+                repaired = true;
+                member.setRole(getLowestGuildRole());
+                LoggingUtils.severe("The player (" + member.getName() + ") had a role level that doesn't exist on the server anymore. To prevent issues, they've been automatically set the the lowest role level on the server.");
             }
         }
+        // Drop allies and ally requests of guilds that were deleted while this one wasn't loaded
+        boolean removedAllies = guild.getAllies().removeIf(ally -> !exists(ally));
+        if (guild.getPendingAllies().removeIf(from -> !exists(from)) || removedAllies) {
+            repaired = true;
+            guild.markDirty();
+        }
+        // Rebinding tiers and roles isn't a change, only save it again if something was fixed or was already unsaved
+        if (!repaired && !wasDirty) {
+            guild.markClean();
+        }
+    }
+
+    /**
+     * Check if a guild is still stored, without loading it
+     *
+     * @param id the id of the guild
+     * @return if the guild exists
+     */
+    private boolean exists(UUID id) {
+        return lazy ? index.contains(id) : registry.getById(id) != null;
     }
 
     /**
@@ -134,6 +239,7 @@ public class GuildHandler {
     private void loadRoles() {
         final YamlConfiguration conf = YamlConfiguration.loadConfiguration(new File(guildsPlugin.getDataFolder(), "roles.yml"));
         final ConfigurationSection roleSec = conf.getConfigurationSection("roles");
+        final List<GuildRole> loaded = new ArrayList<>();
 
         for (String s : roleSec.getKeys(false)) {
             final String path = s + ".permissions.";
@@ -149,16 +255,19 @@ public class GuildHandler {
                     role.addPerm(rolePerm);
                 }
             }
-            this.roles.add(role);
+            loaded.add(role);
         }
+
+        this.roles = new LevelIndex<>(loaded, GuildRole::getLevel, true);
     }
 
     private void loadTiers() {
         final YamlConfiguration conf = YamlConfiguration.loadConfiguration(new File(guildsPlugin.getDataFolder(), "tiers.yml"));
         final ConfigurationSection tierSec = conf.getConfigurationSection("tiers.list");
+        final List<GuildTier> loaded = new ArrayList<>();
 
         for (String key : tierSec.getKeys(false)) {
-            tiers.add(GuildTier.builder()
+            loaded.add(GuildTier.builder()
                     .level(tierSec.getInt(key + ".level"))
                     .name(tierSec.getString(key + ".name"))
                     .cost(tierSec.getDouble(key + ".cost", 1000))
@@ -173,14 +282,62 @@ public class GuildHandler {
                     .permissions(tierSec.getStringList(key + ".permissions"))
                     .build());
         }
+
+        this.tiers = new LevelIndex<>(loaded, GuildTier::getLevel, false);
     }
 
     /**
-     * Saves the data of guilds
+     * Saves the data of guilds, copying the vaults in one go. This has to run on the main thread.
      */
     public void saveData() throws IOException {
-        guilds.forEach(this::saveVaultCache);
-        guildsPlugin.getDatabase().getGuildAdapter().saveGuilds(guilds);
+        vaultCache.saveAll();
+        guildsPlugin.getDatabase().getGuildAdapter().saveDirtyGuilds(getSavableGuilds());
+    }
+
+    /**
+     * Saves the data of guilds using vault contents copied by {@link #copyVaults(Consumer)}. This can run async.
+     *
+     * @param vaults the copied vaults
+     */
+    public void saveData(List<VaultCache.VaultCopy> vaults) throws IOException {
+        vaultCache.write(vaults);
+        guildsPlugin.getDatabase().getGuildAdapter().saveDirtyGuilds(getSavableGuilds());
+    }
+
+    /**
+     * Get the loaded guilds along with unloaded guilds that haven't been written yet
+     *
+     * @return the guilds a save has to look at
+     */
+    private List<Guild> getSavableGuilds() {
+        if (flushing.isEmpty()) {
+            return registry.getGuilds();
+        }
+        List<Guild> guilds = new ArrayList<>(registry.getGuilds());
+        guilds.addAll(flushing.values());
+        return guilds;
+    }
+
+    /**
+     * Copy the changed vaults on the main thread, spread over as many ticks as needed to stay within the tick budget
+     *
+     * @param done called on the main thread with the copies once every vault has been checked
+     */
+    public void copyVaults(Consumer<List<VaultCache.VaultCopy>> done) {
+        VaultCache.CopyPass pass = vaultCache.startCopy();
+        if (pass.step(VAULT_COPY_BUDGET)) {
+            done.accept(pass.getCopies());
+            return;
+        }
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                if (pass.step(VAULT_COPY_BUDGET)) {
+                    cancel();
+                    done.accept(pass.getCopies());
+                }
+            }
+        }.runTaskTimer(guildsPlugin, 1L, 1L);
     }
 
 
@@ -190,8 +347,12 @@ public class GuildHandler {
      * @param guild the guild being added
      */
     public void addGuild(@NotNull Guild guild) {
-        guilds.add(guild);
-        createVaultCache(guild);
+        registry.add(guild);
+        allyGraph.add(guild);
+        if (lazy) {
+            index.put(GuildIndex.Entry.of(guild));
+            lastUsed.put(guild.getId(), System.currentTimeMillis());
+        }
     }
 
     /**
@@ -200,17 +361,49 @@ public class GuildHandler {
      * @param guild the guild being removed
      */
     public void removeGuild(@NotNull Guild guild) {
-        vaults.remove(guild);
-        guilds.remove(guild);
+        vaultCache.remove(guild);
+        allyGraph.remove(guild);
+        registry.remove(guild);
+        index.remove(guild.getId());
+        lastUsed.remove(guild.getId());
+        if (writeQueue != null) {
+            writeQueue.discard(guild.getId());
+        }
+        guildsPlugin.getDatabase().getGuildAdapter().queueDelete(guild.getId().toString());
     }
 
     /**
-     * Retrieve a guild by it's name
+     * Retrieve a guild by it's name, ignoring colors and case
      *
      * @return the guild object with given name
      */
     public Guild getGuild(@NotNull String name) {
-        return guilds.stream().filter(guild -> ACFBukkitUtil.removeColors(guild.getName()).equals(name)).findFirst().orElse(null);
+        Guild guild = registry.getByName(name);
+        if (guild == null && lazy) {
+            guild = loadGuild(index.findByName(name));
+            // The index entry can be older than the loaded guild
+            if (guild != null && !GuildRegistry.normalize(guild.getName()).equals(GuildRegistry.normalize(name))) {
+                return null;
+            }
+        }
+        return touch(guild);
+    }
+
+    /**
+     * Retrieve a guild by it's prefix, ignoring colors and case
+     *
+     * @param prefix the prefix of the guild
+     * @return the guild object with given prefix
+     */
+    public Guild getGuildByPrefix(@NotNull String prefix) {
+        Guild guild = registry.getByPrefix(prefix);
+        if (guild == null && lazy) {
+            guild = loadGuild(index.findByPrefix(prefix));
+            if (guild != null && (guild.getPrefix() == null || !GuildRegistry.normalize(guild.getPrefix()).equals(GuildRegistry.normalize(prefix)))) {
+                return null;
+            }
+        }
+        return touch(guild);
     }
 
     /**
@@ -219,7 +412,79 @@ public class GuildHandler {
      * @return the guild object by player
      */
     public Guild getGuild(@NotNull OfflinePlayer p) {
-        return guilds.stream().filter(guild -> guild.getMember(p.getUniqueId()) != null).findFirst().orElse(null);
+        return getGuildByMember(p.getUniqueId());
+    }
+
+    /**
+     * Retrieve a guild by the uuid of one of it's members
+     *
+     * @param uuid the uuid of the player
+     * @return the guild of the player or null
+     */
+    public Guild getGuildByMember(@NotNull UUID uuid) {
+        Guild guild = registry.getByMember(uuid);
+        if (guild == null && lazy) {
+            guild = loadGuild(index.findByMember(uuid));
+            if (guild != null && !guild.isMember(uuid)) {
+                return null;
+            }
+        }
+        return touch(guild);
+    }
+
+    /**
+     * Resolve the guild of a player that is logging in and warm what the join listeners use, so they
+     * don't have to touch the storage on the main thread. Meant to be called from the async pre login,
+     * the login only waits up to the timeout and the work carries on in the background after that.
+     *
+     * @param uuid the uuid of the player logging in
+     * @param timeout how long to wait, in milliseconds
+     */
+    public void prefetch(@NotNull UUID uuid, long timeout) {
+        // Everything is in memory already, nothing can be slow
+        if (!lazy) {
+            warm(uuid);
+            return;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(guildsPlugin, () -> {
+            try {
+                warm(uuid);
+                future.complete(null);
+            } catch (RuntimeException ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        try {
+            future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LoggingUtils.warn("Loading the guild of " + uuid + " is taking longer than " + timeout + "ms, letting them log in anyway");
+        } catch (ExecutionException e) {
+            LoggingUtils.warn("Failed to prefetch the guild of " + uuid + ": " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Load the guild of a player along with it's allies and build the lookups used on join
+     *
+     * @param uuid the uuid of the player
+     */
+    private void warm(UUID uuid) {
+        Guild guild = getGuildByMember(uuid);
+        if (guild == null) {
+            return;
+        }
+        if (lazy) {
+            pinned.put(guild.getId(), System.currentTimeMillis() + PREFETCH_PIN);
+        }
+        // Builds the member index the join listeners look the player up in
+        guild.getMember(uuid);
+        // Ally checks in chat and combat resolve the ally guilds
+        for (UUID ally : new ArrayList<>(guild.getAllies())) {
+            getGuild(ally);
+        }
     }
 
     /**
@@ -228,7 +493,11 @@ public class GuildHandler {
      * @return the output
      */
     public Guild getGuild(@NotNull UUID uuid) {
-        return guilds.stream().filter(guild -> guild.getId().equals(uuid)).findFirst().orElse(null);
+        Guild guild = registry.getById(uuid);
+        if (guild == null && lazy) {
+            guild = loadGuild(uuid);
+        }
+        return touch(guild);
     }
 
     /**
@@ -238,7 +507,133 @@ public class GuildHandler {
      * @return the guild who the code belong to
      */
     public Guild getGuildByCode(@NotNull String code) {
-        return guilds.stream().filter(guild -> guild.hasInviteCode(code)).findFirst().orElse(null);
+        Guild guild = registry.getGuilds().stream().filter(g -> g.hasInviteCode(code)).findFirst().orElse(null);
+        if (guild == null && lazy) {
+            guild = loadGuild(index.findByCode(code));
+            if (guild != null && !guild.hasInviteCode(code)) {
+                return null;
+            }
+        }
+        return touch(guild);
+    }
+
+    /**
+     * Load a guild from storage if it isn't loaded yet. Does nothing unless guilds are loaded on demand.
+     *
+     * @param id the id of the guild, may be null to make index lookups easier
+     * @return the guild or null if it doesn't exist
+     */
+    private Guild loadGuild(UUID id) {
+        if (id == null) {
+            return null;
+        }
+        Guild guild = registry.getById(id);
+        if (guild != null || !lazy || !index.contains(id)) {
+            return guild;
+        }
+        synchronized (loadLock) {
+            guild = registry.getById(id);
+            if (guild != null) {
+                return guild;
+            }
+            // Still dirty if it's being written, so the regular save covers it once it's loaded again
+            guild = flushing.remove(id);
+            if (guild == null) {
+                try {
+                    guild = guildsPlugin.getDatabase().getGuildAdapter().getGuild(id.toString());
+                } catch (IOException e) {
+                    LoggingUtils.severe("Failed to load the guild " + id + ": " + e.getMessage());
+                    return null;
+                }
+                if (guild == null) {
+                    // Gone from storage, don't keep looking for it
+                    index.remove(id);
+                    return null;
+                }
+                rebindGuild(guild);
+            }
+            registry.add(guild);
+            allyGraph.add(guild);
+            lastUsed.put(id, System.currentTimeMillis());
+            return guild;
+        }
+    }
+
+    /**
+     * Load every stored guild, for the few things that have to see all of them (like migrations)
+     *
+     * @return every guild
+     */
+    public List<Guild> getAllGuilds() {
+        if (lazy) {
+            for (GuildIndex.Entry entry : index.getEntries()) {
+                loadGuild(entry.getId());
+            }
+        }
+        return registry.getGuilds();
+    }
+
+    /**
+     * Remember when a guild was last used so idle guilds can be unloaded
+     *
+     * @param guild the guild, may be null
+     * @return the same guild
+     */
+    private Guild touch(Guild guild) {
+        if (guild != null && lazy) {
+            lastUsed.put(guild.getId(), System.currentTimeMillis());
+        }
+        return guild;
+    }
+
+    /**
+     * Unload guilds without online members that have been idle for too long, and the least recently used ones
+     * while more are loaded than allowed. Changed guilds are written before they are forgotten.
+     * This checks the vault viewers so it runs on the main thread.
+     */
+    public void unloadIdleGuilds() {
+        if (!lazy || migrating) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long cutoff = now - TimeUnit.MINUTES.toMillis(settingsManager.getProperty(StorageSettings.LAZY_LOADING_IDLE_TIME));
+        pinned.values().removeIf(until -> until <= now);
+        List<Guild> candidates = registry.getGuilds().stream()
+                .filter(g -> g.getOnlineCount() == 0 && !pinned.containsKey(g.getId()))
+                .sorted(Comparator.comparingLong(g -> lastUsed.getOrDefault(g.getId(), 0L)))
+                .collect(Collectors.toList());
+        int excess = candidates.size() - settingsManager.getProperty(StorageSettings.LAZY_LOADING_MAX_GUILDS);
+        List<Guild> unloaded = new ArrayList<>();
+        for (Guild guild : candidates) {
+            if (excess <= 0 && lastUsed.getOrDefault(guild.getId(), 0L) > cutoff) {
+                break;
+            }
+            // Somebody is still looking at one of the vaults
+            if (!vaultCache.unload(guild)) {
+                continue;
+            }
+            index.put(GuildIndex.Entry.of(guild));
+            lastUsed.remove(guild.getId());
+            registry.remove(guild);
+            if (guild.isDirty()) {
+                flushing.put(guild.getId(), guild);
+                unloaded.add(guild);
+            }
+            excess--;
+        }
+        if (unloaded.isEmpty()) {
+            return;
+        }
+        Guilds.newChain().async(() -> {
+            try {
+                guildsPlugin.getDatabase().getGuildAdapter().saveDirtyGuilds(unloaded);
+            } catch (IOException e) {
+                // Still dirty, the regular save picks them up from the flushing map
+                LoggingUtils.severe("Failed to save unloaded guilds: " + e.getMessage());
+                return;
+            }
+            unloaded.forEach(g -> flushing.remove(g.getId(), g));
+        }).execute();
     }
 
     /**
@@ -257,7 +652,7 @@ public class GuildHandler {
      * @return the tier object if found
      */
     public GuildTier getGuildTier(int level) {
-        return tiers.stream().filter(tier -> tier.getLevel() == level).findFirst().orElse(null);
+        return tiers.get(level);
     }
 
     /**
@@ -267,7 +662,7 @@ public class GuildHandler {
      * @return the role object if found
      */
     public GuildRole getGuildRole(int level) {
-        return roles.stream().filter(guildRole -> guildRole.getLevel() == level).findFirst().orElse(null);
+        return roles.get(level);
     }
 
     /**
@@ -289,7 +684,7 @@ public class GuildHandler {
      * @return allies or not
      */
     public boolean isAlly(Guild guild, Guild target) {
-        return guild.getAllies().contains(target.getId());
+        return allyGraph.isAlly(guild.getId(), target.getId());
     }
 
     /**
@@ -303,7 +698,7 @@ public class GuildHandler {
         Guild tGuild = getGuild(target);
         if (pGuild == null || tGuild == null)
             return false;
-        return pGuild.getAllies().contains(tGuild.getId());
+        return allyGraph.isAlly(pGuild.getId(), tGuild.getId());
     }
 
     /**
@@ -370,7 +765,7 @@ public class GuildHandler {
      * @return an integer of size.
      */
     public int getGuildsSize() {
-        return guilds.size();
+        return lazy ? index.size() : registry.size();
     }
 
     /**
@@ -379,7 +774,7 @@ public class GuildHandler {
      * @return the max tier level
      */
     public int getMaxTierLevel() {
-        return tiers.size();
+        return tiers.getValues().size();
     }
 
     /**
@@ -397,7 +792,7 @@ public class GuildHandler {
      * @return guild role
      */
     public GuildRole getLowestGuildRole() {
-        return roles.get(roles.size() - 1);
+        return roles.getLowest();
     }
 
     /**
@@ -405,7 +800,7 @@ public class GuildHandler {
      * @return the lowest guild tier
      */
     public GuildTier getLowestGuildTier() {
-        return tiers.get(0);
+        return tiers.getLowest();
     }
 
     /**
@@ -424,7 +819,17 @@ public class GuildHandler {
      * @return a string list of guilds's names.
      */
     public List<String> getInvitedGuilds(OfflinePlayer player) {
-        return guilds.stream().filter(guild -> guild.getInvitedMembers().contains(player.getUniqueId())).map(Guild::getName).collect(Collectors.toList());
+        List<String> names = registry.getGuilds().stream().filter(guild -> guild.getInvitedMembers().contains(player.getUniqueId())).map(Guild::getName).collect(Collectors.toList());
+        if (lazy) {
+            // Unloaded guilds can't have changed since their entry was written
+            for (UUID id : index.findByInvite(player.getUniqueId())) {
+                GuildIndex.Entry entry = index.get(id);
+                if (entry != null && registry.getById(id) == null) {
+                    names.add(entry.getName());
+                }
+            }
+        }
+        return names;
     }
 
     /**
@@ -433,48 +838,53 @@ public class GuildHandler {
      * @return a string list of guild names
      */
     public List<String> getGuildNames() {
-        return guilds.stream().map(Guild::getName).map(ACFBukkitUtil::removeColors).collect(Collectors.toList());
+        return getAllNames(false).stream().map(ACFBukkitUtil::removeColors).collect(Collectors.toList());
     }
 
     /**
-     * Create the cache of a vault for the guild
+     * Get the names of loaded guilds and, when guilds are loaded on demand, of the unloaded ones
      *
-     * @param guild the guild being cached
-     */
-    private void createVaultCache(Guild guild) {
-        List<Inventory> vaults = new ArrayList<>();
-        if (guild.getVaults() == null) return;
-        guild.getVaults().forEach(v -> {
-            try {
-                vaults.add(Serialization.deserializeInventory(v, settingsManager));
-            } catch (InvalidConfigurationException e) {
-                e.printStackTrace();
+     * @param publicOnly only include public guilds
+     * @return the guild names
+     */
+    private List<String> getAllNames(boolean publicOnly) {
+        List<String> names = registry.getGuilds().stream().filter(g -> !publicOnly || !g.isPrivate()).map(Guild::getName).collect(Collectors.toList());
+        if (lazy) {
+            for (GuildIndex.Entry entry : index.getEntries()) {
+                if ((!publicOnly || !entry.isPrivate()) && registry.getById(entry.getId()) == null) {
+                    names.add(entry.getName());
+                }
             }
-        });
-        this.vaults.put(guild, vaults);
+        }
+        return names;
     }
 
     /**
-     * Save the vaults of a guild
+     * Open a guild vault
      *
-     * @param guild the guild being saved
+     * @param guild the owner of the vault
+     * @param vault which vault to open
+     * @return the inventory to open, or null if the stored vault can't be read
      */
-    private void saveVaultCache(Guild guild) {
-        List<String> vaults = new ArrayList<>();
-        if (guild.getVaults() == null) return;
-        this.vaults.get(guild).forEach(v -> vaults.add(Serialization.serializeInventory(v)));
-        guild.setVaults(vaults);
+    public Inventory getGuildVault(Guild guild, int vault) {
+        return vaultCache.get(guild, vault);
     }
 
     /**
-     * Open a guild vault
+     * Give a guild another vault
      *
-     * @param guild the owner of the vault
-     * @param vault which vault to open
-     * @return the inventory to open
+     * @param guild the guild getting the vault
+     * @return the new vault
      */
-    public Inventory getGuildVault(Guild guild, int vault) {
-        return vaults.get(guild).get(vault - 1);
+    public Inventory addGuildVault(Guild guild) {
+        return vaultCache.add(guild);
+    }
+
+    /**
+     * Turn vaults that nobody has used for a while back into their stored form
+     */
+    public void unloadIdleVaults() {
+        vaultCache.evictIdle(settingsManager.getProperty(GuildVaultSettings.VAULT_UNLOAD_TIME), TimeUnit.MINUTES);
     }
 
     /**
@@ -572,6 +982,28 @@ public class GuildHandler {
         guildChat.remove(player);
     }
 
+    /**
+     * This method is ran when a player joins to add them to their guild's online members
+     * @param player the player that joined
+     */
+    public void memberLogin(Player player) {
+        Guild guild = getGuild(player);
+        if (guild != null) {
+            guild.setOnline(player);
+        }
+    }
+
+    /**
+     * This method is ran when a player logs out to remove them from their guild's online members
+     * @param player the player that left
+     */
+    public void memberLogout(Player player) {
+        Guild guild = getGuild(player);
+        if (guild != null) {
+            guild.setOffline(player.getUniqueId());
+        }
+    }
+
     /**
      * Clear both lists
      */
@@ -842,6 +1274,8 @@ public class GuildHandler {
             ACFUtil.sneaky(new ExpectationNotMet(Messages.CODES__OUT));
 
         code.addRedeemer(player);
+        // The code lives in the guild data, a member row alone won't save the used up invite
+        guild.markDirty();
 
         guild.addMemberByCode(new GuildMember(player.getUniqueId(), getLowestGuildRole()));
 
@@ -870,10 +1304,11 @@ public class GuildHandler {
     /**
      * Remove a guild from all other guilds allies or pending allies when deleted
      * @param guild the guild to check
+     * @deprecated {@link #removeGuild(Guild)} already does this, only through the guilds that point at it
      */
+    @Deprecated
     public void removeAlliesOnDelete(Guild guild) {
-        getGuilds().forEach(g -> g.getPendingAllies().removeIf(x -> x.equals(guild.getId())));
-        getGuilds().forEach(g -> g.getAllies().removeIf(x -> x.equals(guild.getId())));
+        allyGraph.remove(guild);
     }
 
     /**
@@ -890,7 +1325,7 @@ public class GuildHandler {
      * @return list of public guilds
      */
     public List<String> getPublicGuilds() {
-        return guilds.stream().filter(g -> !g.isPrivate()).map(Guild::getName).collect(Collectors.toList());
+        return getAllNames(true);
     }
 
     /**
@@ -906,12 +1341,17 @@ public class GuildHandler {
     }
 
     /**
-     * Check if a guild name already exists
+     * Check if a guild name already exists, ignoring colors and case
      * @param name name to check
      * @return exists or not
      */
     public boolean checkGuildNames(String name) {
-        return guilds.stream().anyMatch(g -> g.getName().equalsIgnoreCase(name));
+        if (registry.nameExists(name)) {
+            return true;
+        }
+        UUID id = lazy ? index.findByName(name) : null;
+        // Entries of loaded guilds can be stale, those were already checked above
+        return id != null && registry.getById(id) == null;
     }
 
     /**
@@ -921,10 +1361,12 @@ public class GuildHandler {
      * @param msg the message
      */
     public void handleGuildChat(Guild guild, Player player, String msg) {
-        guild.sendMessage(StringUtils.color(settingsManager.getProperty(GuildSettings.GUILD_CHAT_FORMAT).replace("{role}", getGuildRole(guild.getMember(player.getUniqueId()).getRole().getLevel()).getName()).replace("{player}", player.getName()).replace("{display-name}", player.getDisplayName()).replace("{message}", msg)));
-        getSpies().forEach(s -> s.sendMessage(StringUtils.color(settingsManager.getProperty(GuildSettings.SPY_CHAT_FORMAT).replace("{role}", getGuildRole(guild.getMember(player.getUniqueId()).getRole().getLevel()).getName()).replace("{player}", player.getName()).replace("{display-name}", player.getDisplayName()).replace("{message}", msg).replace("{guild}", guild.getName()))));
+        String role = getGuildRole(guild.getMember(player.getUniqueId()).getRole().getLevel()).getName();
+        guild.sendMessage(StringUtils.color(settingsManager.getProperty(GuildSettings.GUILD_CHAT_FORMAT).replace("{role}", role).replace("{player}", player.getName()).replace("{display-name}", player.getDisplayName()).replace("{message}", msg)));
+        String spy = StringUtils.color(settingsManager.getProperty(GuildSettings.SPY_CHAT_FORMAT).replace("{role}", role).replace("{player}", player.getName()).replace("{display-name}", player.getDisplayName()).replace("{message}", msg).replace("{guild}", guild.getName()));
+        getSpies().forEach(s -> s.sendMessage(spy));
         if (settingsManager.getProperty(GuildSettings.LOG_GUILD_CHAT)) {
-            LoggingUtils.info(StringUtils.color(settingsManager.getProperty(GuildSettings.SPY_CHAT_FORMAT).replace("{role}", getGuildRole(guild.getMember(player.getUniqueId()).getRole().getLevel()).getName()).replace("{player}", player.getName()).replace("{display-name}", player.getDisplayName()).replace("{message}", msg).replace("{guild}", guild.getName())));
+            LoggingUtils.info(spy);
         }
     }
 
@@ -951,8 +1393,33 @@ public class GuildHandler {
         return StringUtils.color(combined.replace("{name}", guild.getName()).replace("{prefix}", guild.getPrefix()));
     }
 
+    /**
+     * Get the loaded guilds, which is every guild unless they are loaded on demand (see {@link #getAllGuilds()})
+     *
+     * @return the loaded guilds
+     */
     public List<Guild> getGuilds() {
-        return this.guilds;
+        return this.registry.getGuilds();
+    }
+
+    public GuildWriteQueue getWriteQueue() {
+        return this.writeQueue;
+    }
+
+    public GuildIndex getIndex() {
+        return this.index;
+    }
+
+    public boolean isLazy() {
+        return this.lazy;
+    }
+
+    public AllyGraph getAllyGraph() {
+        return this.allyGraph;
+    }
+
+    public GuildRegistry getRegistry() {
+        return this.registry;
     }
 
     public List<Player> getSpies() {
@@ -964,15 +1431,15 @@ public class GuildHandler {
     }
 
     public List<GuildTier> getTiers() {
-        return this.tiers;
+        return this.tiers.getValues();
     }
 
     public List<GuildRole> getRoles() {
-        return this.roles;
+        return this.roles.getValues();
     }
 
-    public Map<Guild, List<Inventory>> getVaults() {
-        return this.vaults;
+    public VaultCache getVaultCache() {
+        return this.vaultCache;
     }
 
     public List<Player> getOpened() {
@@ -986,4 +1453,74 @@ public class GuildHandler {
     public void setMigrating(boolean migrating) {
         this.migrating = migrating;
     }
+
+    /**
+     * Queues changed guilds to be written. Balance and member changes are written on their own when the storage
+     * can: appended to the journal right away, or written as single rows on the writer thread for the normalized sql tables.
+     */
+    private final class StorageListener implements GuildChangeListener {
+
+        @Override
+        public void changed(@NotNull Guild guild) {
+            if (writeQueue != null) {
+                writeQueue.offer(guild);
+            }
+        }
+
+        @Override
+        public boolean balanceChanged(@NotNull Guild guild) {
+            return writeRow(guild, "the balance", adapter -> adapter.updateBalance(guild));
+        }
+
+        @Override
+        public boolean memberChanged(@NotNull Guild guild, @NotNull GuildMember member) {
+            return writeRow(guild, "a member", adapter -> adapter.saveMember(guild, member));
+        }
+
+        @Override
+        public boolean memberRemoved(@NotNull Guild guild, @NotNull UUID uuid) {
+            return writeRow(guild, "a member leaving", adapter -> adapter.deleteMember(guild, uuid));
+        }
+
+        /**
+         * Write a single change if the storage supports it
+         * @return true if the change is written on its own, false if the guild has to be written again
+         */
+        private boolean writeRow(Guild guild, String what, RowWrite write) {
+            GuildAdapter adapter = guildsPlugin.getDatabase().getGuildAdapter();
+            if (adapter == null || migrating || !adapter.supportsRowUpdates()) {
+                return false;
+            }
+            if (adapter.hasJournal()) {
+                // The journal only covers crashes, the guild file is still written as usual
+                try {
+                    write.write(adapter);
+                } catch (IOException e) {
+                    LoggingUtils.warn("Failed to journal " + what + " of " + guild.getName() + ": " + e.getMessage());
+                }
+                return false;
+            }
+            // A guild waiting for a full write (or not stored yet) gets the change with that write
+            if (writeQueue == null || guild.isDirty()) {
+                return false;
+            }
+            return writeQueue.execute(() -> {
+                // Deleted guilds are left alone, their rows are removed with the guild
+                if (lazy ? !index.contains(guild.getId()) : registry.getById(guild.getId()) != guild) {
+                    return;
+                }
+                try {
+                    write.write(adapter);
+                } catch (IOException | RuntimeException e) {
+                    LoggingUtils.warn("Failed to write " + what + " of " + guild.getName() + ", saving the whole guild instead: " + e.getMessage());
+                    guild.markDirty();
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWrite {
+        void write(GuildAdapter adapter) throws IOException;
+    }
 }
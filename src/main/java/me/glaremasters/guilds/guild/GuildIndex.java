@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A small summary of every stored guild, used to find guilds that aren't loaded.
+ * Only the keys guilds are looked up by are kept, the guild itself is read from storage when needed.
+ * <p>
+ * Entries of loaded guilds can be out of date, the loaded guild is the source of truth and its entry
+ * is refreshed when it gets unloaded. Anything found through the index should be checked against the guild.
+ */
+public class GuildIndex {
+
+    private final Object lock = new Object();
+    private final Map<UUID, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<String, UUID> byName = new ConcurrentHashMap<>();
+    private final Map<String, UUID> byPrefix = new ConcurrentHashMap<>();
+    private final Map<String, UUID> byCode = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> byMember = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> byInvite = new ConcurrentHashMap<>();
+
+    /**
+     * Add or replace the entry of a guild
+     * @param entry the entry
+     */
+    public void put(@NotNull Entry entry) {
+        synchronized (lock) {
+            remove(entry.id);
+            byId.put(entry.id, entry);
+            if (entry.name != null) {
+                byName.putIfAbsent(GuildRegistry.normalize(entry.name), entry.id);
+            }
+            if (entry.prefix != null) {
+                byPrefix.putIfAbsent(GuildRegistry.normalize(entry.prefix), entry.id);
+            }
+            entry.codes.forEach(code -> byCode.putIfAbsent(code, entry.id));
+            entry.members.forEach(member -> byMember.putIfAbsent(member, entry.id));
+            entry.invites.forEach(player -> byInvite.computeIfAbsent(player, k -> ConcurrentHashMap.newKeySet()).add(entry.id));
+        }
+    }
+
+    /**
+     * Remove the entry of a guild
+     * @param id the id of the guild
+     */
+    public void remove(@NotNull UUID id) {
+        synchronized (lock) {
+            Entry entry = byId.remove(id);
+            if (entry == null) return;
+            if (entry.name != null) {
+                byName.remove(GuildRegistry.normalize(entry.name), id);
+            }
+            if (entry.prefix != null) {
+                byPrefix.remove(GuildRegistry.normalize(entry.prefix), id);
+            }
+            entry.codes.forEach(code -> byCode.remove(code, id));
+            entry.members.forEach(member -> byMember.remove(member, id));
+            for (UUID player : entry.invites) {
+                Set<UUID> guilds = byInvite.get(player);
+                if (guilds != null) {
+                    guilds.remove(id);
+                    if (guilds.isEmpty()) {
+                        byInvite.remove(player, guilds);
+                    }
+                }
+            }
+        }
+    }
+
+    @Nullable
+    public Entry get(@NotNull UUID id) {
+        return byId.get(id);
+    }
+
+    public boolean contains(@NotNull UUID id) {
+        return byId.containsKey(id);
+    }
+
+    @Nullable
+    public UUID findByName(@NotNull String name) {
+        return byName.get(GuildRegistry.normalize(name));
+    }
+
+    @Nullable
+    public UUID findByPrefix(@NotNull String prefix) {
+        return byPrefix.get(GuildRegistry.normalize(prefix));
+    }
+
+    @Nullable
+    public UUID findByCode(@NotNull String code) {
+        return byCode.get(code);
+    }
+
+    @Nullable
+    public UUID findByMember(@NotNull UUID player) {
+        return byMember.get(player);
+    }
+
+    @NotNull
+    public Set<UUID> findByInvite(@NotNull UUID player) {
+        Set<UUID> guilds = byInvite.get(player);
+        return guilds == null ? Collections.emptySet() : guilds;
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * The lookup keys of a single guild
+     */
+    public static final class Entry {
+        private final UUID id;
+        private final String name;
+        private final String prefix;
+        private final boolean isPrivate;
+        private final Set<UUID> members = new HashSet<>();
+        private final Set<UUID> invites = new HashSet<>();
+        private final Set<String> codes = new HashSet<>();
+
+        public Entry(@NotNull UUID id, String name, String prefix, boolean isPrivate) {
+            this.id = id;
+            this.name = name;
+            this.prefix = prefix;
+            this.isPrivate = isPrivate;
+        }
+
+        /**
+         * Create the entry of a guild from its current state
+         * @param guild the guild
+         * @return the entry
+         */
+        public static Entry of(@NotNull Guild guild) {
+            Entry entry = new Entry(guild.getId(), guild.getName(), guild.getPrefix(), guild.isPrivate());
+            guild.getMembers().forEach(m -> entry.members.add(m.getUuid()));
+            entry.invites.addAll(guild.getInvitedMembers());
+            guild.getCodes().forEach(c -> entry.codes.add(c.getId()));
+            return entry;
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public boolean isPrivate() {
+            return isPrivate;
+        }
+
+        /**
+         * Get the members of the guild, only to be changed while the entry is being built
+         * @return the member uuids
+         */
+        public Set<UUID> getMembers() {
+            return members;
+        }
+
+        public Set<UUID> getInvites() {
+            return invites;
+        }
+
+        public Set<String> getCodes() {
+            return codes;
+        }
+    }
+}
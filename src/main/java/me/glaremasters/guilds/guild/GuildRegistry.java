@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import co.aikar.commands.ACFBukkitUtil;
+import me.glaremasters.guilds.utils.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds every loaded guild along with the lookup tables used to resolve them.
+ * All lookups are constant time and are kept up to date by the guilds themselves
+ * once they have been added.
+ * <p>
+ * The guild list is copy-on-write: every add or remove publishes a new immutable snapshot,
+ * so async tasks can iterate {@link #getGuilds()} while the main thread keeps changing the registry.
+ */
+public class GuildRegistry {
+
+    private final Object lock = new Object();
+    private volatile List<Guild> guilds = Collections.emptyList();
+    private volatile long version;
+    private final Map<UUID, Guild> byId = new ConcurrentHashMap<>();
+    private final Map<String, Guild> byName = new ConcurrentHashMap<>();
+    private final Map<String, Guild> byPrefix = new ConcurrentHashMap<>();
+    private final Map<UUID, Guild> byMember = new ConcurrentHashMap<>();
+    private volatile GuildChangeListener changeListener;
+
+    /**
+     * Add a guild to the registry and index it
+     * @param guild the guild being added
+     */
+    public void add(@NotNull Guild guild) {
+        synchronized (lock) {
+            List<Guild> copy = new ArrayList<>(guilds.size() + 1);
+            copy.addAll(guilds);
+            copy.add(guild);
+            publish(copy);
+        }
+        index(guild);
+    }
+
+    /**
+     * Add many guilds to the registry at once, publishing a single snapshot
+     * @param toAdd the guilds being added
+     */
+    public void addAll(@NotNull Collection<Guild> toAdd) {
+        synchronized (lock) {
+            List<Guild> copy = new ArrayList<>(guilds.size() + toAdd.size());
+            copy.addAll(guilds);
+            copy.addAll(toAdd);
+            publish(copy);
+        }
+        toAdd.forEach(this::index);
+    }
+
+    /**
+     * Remove a guild from the registry and all of it's indexes
+     * @param guild the guild being removed
+     */
+    public void remove(@NotNull Guild guild) {
+        synchronized (lock) {
+            List<Guild> copy = new ArrayList<>(guilds);
+            if (!copy.remove(guild)) return;
+            publish(copy);
+        }
+        byId.remove(guild.getId(), guild);
+        removeKey(byName, guild.getName(), guild);
+        removeKey(byPrefix, guild.getPrefix(), guild);
+        guild.getMembers().forEach(m -> byMember.remove(m.getUuid(), guild));
+        guild.setRegistry(null);
+    }
+
+    /**
+     * Get a guild by it's id
+     * @param id the id of the guild
+     * @return the guild or null
+     */
+    @Nullable
+    public Guild getById(@NotNull UUID id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Get a guild by it's name, ignoring colors and case
+     * @param name the name of the guild
+     * @return the guild or null
+     */
+    @Nullable
+    public Guild getByName(@NotNull String name) {
+        return byName.get(normalize(name));
+    }
+
+    /**
+     * Get a guild by it's prefix, ignoring colors and case
+     * @param prefix the prefix of the guild
+     * @return the guild or null
+     */
+    @Nullable
+    public Guild getByPrefix(@NotNull String prefix) {
+        return byPrefix.get(normalize(prefix));
+    }
+
+    /**
+     * Get the guild a player is a member of
+     * @param uuid the uuid of the player
+     * @return the guild or null
+     */
+    @Nullable
+    public Guild getByMember(@NotNull UUID uuid) {
+        return byMember.get(uuid);
+    }
+
+    /**
+     * Check if a guild name is already taken, ignoring colors and case
+     * @param name the name to check
+     * @return taken or not
+     */
+    public boolean nameExists(@NotNull String name) {
+        return byName.containsKey(normalize(name));
+    }
+
+    /**
+     * Get all the guilds in the registry
+     * @return immutable snapshot of the guilds at the time of the call
+     */
+    public List<Guild> getGuilds() {
+        return guilds;
+    }
+
+    /**
+     * Get the version of the registry, which goes up every time a guild is added or removed
+     * @return the current version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the amount of guilds in the registry
+     * @return amount of guilds
+     */
+    public int size() {
+        return guilds.size();
+    }
+
+    private void index(Guild guild) {
+        guild.setRegistry(this);
+        byId.put(guild.getId(), guild);
+        putKey(byName, guild.getName(), guild);
+        putKey(byPrefix, guild.getPrefix(), guild);
+        guild.getMembers().forEach(m -> byMember.putIfAbsent(m.getUuid(), guild));
+    }
+
+    private void publish(List<Guild> copy) {
+        guilds = Collections.unmodifiableList(copy);
+        version++;
+    }
+
+    void rename(@NotNull Guild guild, @Nullable String oldName, @Nullable String newName) {
+        removeKey(byName, oldName, guild);
+        putKey(byName, newName, guild);
+    }
+
+    void changePrefix(@NotNull Guild guild, @Nullable String oldPrefix, @Nullable String newPrefix) {
+        removeKey(byPrefix, oldPrefix, guild);
+        putKey(byPrefix, newPrefix, guild);
+    }
+
+    /**
+     * Set what gets told about guilds in the registry that changed
+     * @param changeListener told about every change to a guild in the registry, or null for nothing
+     */
+    public void setChangeListener(@Nullable GuildChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    void changed(@NotNull Guild guild) {
+        GuildChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.changed(guild);
+        }
+    }
+
+    boolean balanceChanged(@NotNull Guild guild) {
+        GuildChangeListener listener = changeListener;
+        return listener != null && listener.balanceChanged(guild);
+    }
+
+    boolean memberChanged(@NotNull Guild guild, @NotNull GuildMember member) {
+        GuildChangeListener listener = changeListener;
+        return listener != null && listener.memberChanged(guild, member);
+    }
+
+    boolean memberRemoved(@NotNull Guild guild, @NotNull UUID uuid) {
+        GuildChangeListener listener = changeListener;
+        return listener != null && listener.memberRemoved(guild, uuid);
+    }
+
+    void indexMember(@NotNull UUID uuid, @NotNull Guild guild) {
+        byMember.put(uuid, guild);
+    }
+
+    void unindexMember(@NotNull UUID uuid, @NotNull Guild guild) {
+        byMember.remove(uuid, guild);
+    }
+
+    private static void putKey(Map<String, Guild> index, @Nullable String key, Guild guild) {
+        if (key == null) return;
+        index.putIfAbsent(normalize(key), guild);
+    }
+
+    private static void removeKey(Map<String, Guild> index, @Nullable String key, Guild guild) {
+        if (key == null) return;
+        index.remove(normalize(key), guild);
+    }
+
+    /**
+     * Normalize a name or prefix for lookups by translating and stripping colors and lowering the case
+     * @param input the input to normalize
+     * @return the normalized key
+     */
+    public static String normalize(@NotNull String input) {
+        return ACFBukkitUtil.removeColors(StringUtils.color(input)).toLowerCase(Locale.ROOT);
+    }
+}
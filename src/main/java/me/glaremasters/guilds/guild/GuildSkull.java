@@ -65,6 +65,20 @@ public class GuildSkull {
         itemStack = SkullUtils.getSkull(serialized);
     }
 
+    private GuildSkull(String serialized, ItemStack itemStack) {
+        this.serialized = serialized;
+        this.itemStack = itemStack;
+    }
+
+    /**
+     * Restore a skull from its stored value without building the item stack
+     * @param serialized the serialized string
+     * @return guild skull
+     */
+    public static GuildSkull fromSerialized(String serialized) {
+        return new GuildSkull(serialized, null);
+    }
+
     /**
      * Get the texture of a player's skin
      * @param player the player to get the skin from
@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable lookup table of roles or tiers indexed directly by their level.
+ * A new index is built on every load and swapped in as a whole, so readers never see a partial reload.
+ *
+ * @param <T> the type being indexed
+ */
+final class LevelIndex<T> {
+
+    private final List<T> values;
+    private final Object[] byLevel;
+    private final int minLevel;
+    private final T lowest;
+
+    /**
+     * Build a new index
+     * @param values the values in the order they were loaded
+     * @param level the function to get the level of a value
+     * @param lowestIsHighestLevel if the lowest entry is the one with the highest level (roles) or the smallest level (tiers)
+     */
+    LevelIndex(@NotNull List<T> values, @NotNull ToIntFunction<T> level, boolean lowestIsHighestLevel) {
+        this.values = Collections.unmodifiableList(new ArrayList<>(values));
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        T minValue = null;
+        T maxValue = null;
+        for (T value : values) {
+            int l = level.applyAsInt(value);
+            if (l < min) {
+                min = l;
+                minValue = value;
+            }
+            if (l > max) {
+                max = l;
+                maxValue = value;
+            }
+        }
+
+        if (values.isEmpty()) {
+            this.minLevel = 0;
+            this.byLevel = new Object[0];
+        } else {
+            this.minLevel = min;
+            this.byLevel = new Object[max - min + 1];
+            for (T value : values) {
+                int slot = level.applyAsInt(value) - min;
+                if (byLevel[slot] == null) {
+                    byLevel[slot] = value;
+                }
+            }
+        }
+        this.lowest = lowestIsHighestLevel ? maxValue : minValue;
+    }
+
+    /**
+     * Get a value by it's level
+     * @param level the level to look up
+     * @return the value or null if no value has that level
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    T get(int level) {
+        int slot = level - minLevel;
+        if (slot < 0 || slot >= byLevel.length) {
+            return null;
+        }
+        return (T) byLevel[slot];
+    }
+
+    /**
+     * Get the lowest value of the index
+     * @return the lowest value
+     */
+    T getLowest() {
+        return lowest;
+    }
+
+    /**
+     * Get all values in the order they were loaded
+     * @return unmodifiable list of values
+     */
+    List<T> getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import ch.jalu.configme.SettingsManager;
+import me.glaremasters.guilds.configuration.sections.GuildVaultSettings;
+import me.glaremasters.guilds.utils.Serialization;
+import me.glaremasters.guilds.utils.StringUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps guild vaults in their serialized form and only turns them into inventories while they are used.
+ * Loaded vaults are kept in least recently used order and written back to the guild when they sit idle
+ * with nobody looking at them. A hash of the contents is kept per vault so unchanged vaults aren't
+ * serialized again on every save.
+ *
+ * Saving is split in two: {@link CopyPass} copies the contents of changed vaults on the main thread,
+ * and {@link #write(List)} serializes those copies on any thread without touching the live inventories.
+ */
+public class VaultCache {
+    private final SettingsManager settingsManager;
+    private final Map<Key, Entry> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    // Vaults whose stored data couldn't be read, so the error is only reported once
+    private final Set<Key> broken = new HashSet<>();
+
+    public VaultCache(SettingsManager settingsManager) {
+        this.settingsManager = settingsManager;
+    }
+
+    /**
+     * Get a vault, loading it if needed
+     *
+     * @param guild the owner of the vault
+     * @param vault the vault number, starting at 1
+     * @return the inventory of the vault, or null if the stored vault can't be read
+     * @throws IndexOutOfBoundsException if the guild doesn't have that vault yet
+     */
+    public synchronized Inventory get(Guild guild, int vault) {
+        List<String> stored = guild.getVaults();
+        if (vault < 1 || vault > stored.size()) {
+            throw new IndexOutOfBoundsException("Vault " + vault + " does not exist for " + guild.getName());
+        }
+        Key key = new Key(guild.getId(), vault - 1);
+        Entry entry = loaded.get(key);
+        if (entry == null) {
+            if (broken.contains(key)) {
+                return null;
+            }
+            String serialized = stored.get(vault - 1);
+            Inventory inventory;
+            try {
+                inventory = deserialize(serialized);
+            } catch (InvalidConfigurationException e) {
+                // Leave the stored data alone so it can still be recovered by hand
+                broken.add(key);
+                e.printStackTrace();
+                return null;
+            }
+            entry = new Entry(guild, vault - 1, inventory);
+            // Vaults still in the old JSON format get written again in the binary format on the next save
+            entry.upgrade = serialized == null || Serialization.isLegacy(serialized);
+            loaded.put(key, entry);
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.inventory;
+    }
+
+    /**
+     * Give a guild a new empty vault
+     *
+     * @param guild the guild getting the vault
+     * @return the new vault
+     */
+    public synchronized Inventory add(Guild guild) {
+        Inventory inventory = create();
+        List<String> stored = guild.getVaults();
+        stored.add(Serialization.serializeInventory(inventory));
+        guild.markDirty();
+        Entry entry = new Entry(guild, stored.size() - 1, inventory);
+        entry.lastUsed = System.currentTimeMillis();
+        loaded.put(new Key(guild.getId(), entry.index), entry);
+        return inventory;
+    }
+
+    /**
+     * Copy and write every changed vault right away. This has to run on the main thread.
+     */
+    public void saveAll() {
+        CopyPass pass = startCopy();
+        pass.step(Long.MAX_VALUE);
+        write(pass.getCopies());
+    }
+
+    /**
+     * Start copying the changed vaults, see {@link CopyPass#step(long)}
+     *
+     * @return the copy pass
+     */
+    public synchronized CopyPass startCopy() {
+        return new CopyPass(new ArrayList<>(loaded.values()));
+    }
+
+    /**
+     * Serialize copied vaults and store them on their guilds. This can run on any thread.
+     * A copy is dropped if a newer state of the vault has already been written.
+     *
+     * @param copies the copies made on the main thread
+     */
+    public void write(List<VaultCopy> copies) {
+        for (VaultCopy copy : copies) {
+            String serialized = Serialization.serializeInventoryBinary(copy.size, copy.contents);
+            synchronized (this) {
+                Entry entry = copy.entry;
+                if (entry.unloaded || copy.sequence <= entry.written) {
+                    continue;
+                }
+                store(entry, serialized);
+                entry.written = copy.sequence;
+            }
+        }
+    }
+
+    /**
+     * Drop every loaded vault of a guild without saving it
+     *
+     * @param guild the guild being removed
+     */
+    public synchronized void remove(Guild guild) {
+        broken.removeIf(key -> key.guild.equals(guild.getId()));
+        Iterator<Entry> iterator = loaded.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.guild == guild) {
+                entry.unloaded = true;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Write back and unload every vault of a guild, unless one of them is open. This has to run on the main thread.
+     *
+     * @param guild the guild being unloaded
+     * @return false if a vault is open and nothing was unloaded
+     */
+    public synchronized boolean unload(Guild guild) {
+        for (Entry entry : loaded.values()) {
+            if (entry.guild == guild && !entry.inventory.getViewers().isEmpty()) {
+                return false;
+            }
+        }
+        Iterator<Entry> iterator = loaded.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.guild == guild) {
+                store(entry, Serialization.serializeInventory(entry.inventory));
+                entry.written = ++entry.copied;
+                entry.unloaded = true;
+                iterator.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unload vaults that haven't been used for a while and aren't open. This has to run on the main thread.
+     *
+     * @param idle how long a vault has to be unused before it is unloaded
+     * @param unit the unit of idle
+     * @return how many vaults were unloaded
+     */
+    public synchronized int evictIdle(long idle, TimeUnit unit) {
+        long now = System.currentTimeMillis();
+        long cutoff = now - unit.toMillis(idle);
+        int evicted = 0;
+        List<Map.Entry<Key, Entry>> viewed = new ArrayList<>();
+        Iterator<Map.Entry<Key, Entry>> iterator = loaded.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> mapping = iterator.next();
+            Entry entry = mapping.getValue();
+            // Least recently used come first, everything after this was used more recently
+            if (entry.lastUsed > cutoff) {
+                break;
+            }
+            if (!entry.inventory.getViewers().isEmpty()) {
+                // Moved to the back below, so an open vault doesn't stay at the front and stop the next passes early
+                entry.lastUsed = now;
+                viewed.add(mapping);
+                iterator.remove();
+                continue;
+            }
+            // The inventory is about to be dropped, so write what it holds now and ignore older copies still in flight
+            store(entry, Serialization.serializeInventory(entry.inventory));
+            entry.written = ++entry.copied;
+            entry.unloaded = true;
+            iterator.remove();
+            evicted++;
+        }
+        viewed.forEach(mapping -> loaded.put(mapping.getKey(), mapping.getValue()));
+        return evicted;
+    }
+
+    /**
+     * Get how many vaults currently exist as inventories
+     *
+     * @return loaded vault count
+     */
+    public synchronized int getLoadedCount() {
+        return loaded.size();
+    }
+
+    private void store(Entry entry, String serialized) {
+        List<String> stored = entry.guild.getVaults();
+        if (entry.index < stored.size() && !serialized.equals(stored.get(entry.index))) {
+            stored.set(entry.index, serialized);
+            entry.guild.markDirty();
+        }
+    }
+
+    private Inventory deserialize(String serialized) throws InvalidConfigurationException {
+        if (serialized == null) {
+            return create();
+        }
+        return Serialization.deserializeInventory(serialized, settingsManager);
+    }
+
+    private Inventory create() {
+        return Bukkit.createInventory(null, 54, StringUtils.color(settingsManager.getProperty(GuildVaultSettings.VAULT_NAME)));
+    }
+
+    /**
+     * Copies changed vaults on the main thread a few at a time so a save never holds up a tick for long
+     */
+    public final class CopyPass {
+        private final List<Entry> entries;
+        private final List<VaultCopy> copies = new ArrayList<>();
+        private int position;
+
+        private CopyPass(List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        /**
+         * Copy vaults until the time budget is used up. This has to run on the main thread.
+         *
+         * @param budget how long this step may take in nanoseconds
+         * @return true once every vault has been checked
+         */
+        public boolean step(long budget) {
+            long start = System.nanoTime();
+            synchronized (VaultCache.this) {
+                while (position < entries.size()) {
+                    VaultCopy copy = copyIfChanged(entries.get(position++));
+                    if (copy != null) {
+                        copies.add(copy);
+                    }
+                    if (System.nanoTime() - start >= budget) {
+                        break;
+                    }
+                }
+            }
+            return position >= entries.size();
+        }
+
+        public List<VaultCopy> getCopies() {
+            return copies;
+        }
+
+        private VaultCopy copyIfChanged(Entry entry) {
+            if (entry.unloaded) {
+                return null;
+            }
+            ItemStack[] contents = entry.inventory.getContents();
+            int hash = Arrays.hashCode(contents);
+            // Someone may be moving items around right now, so an open vault is copied on every pass
+            // and its hash is only trusted again once everyone has closed it
+            boolean open = !entry.inventory.getViewers().isEmpty();
+            if (!open && !entry.upgrade && !entry.open && hash == entry.hash) {
+                return null;
+            }
+            ItemStack[] copied = new ItemStack[contents.length];
+            for (int i = 0; i < contents.length; i++) {
+                copied[i] = contents[i] == null ? null : contents[i].clone();
+            }
+            entry.hash = hash;
+            entry.upgrade = false;
+            entry.open = open;
+            return new VaultCopy(entry, entry.inventory.getSize(), copied, ++entry.copied);
+        }
+    }
+
+    /**
+     * The contents of a vault copied on the main thread, safe to serialize anywhere
+     */
+    public static final class VaultCopy {
+        private final Entry entry;
+        private final int size;
+        private final ItemStack[] contents;
+        private final long sequence;
+
+        private VaultCopy(Entry entry, int size, ItemStack[] contents, long sequence) {
+            this.entry = entry;
+            this.size = size;
+            this.contents = contents;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Key {
+        private final UUID guild;
+        private final int index;
+
+        private Key(UUID guild, int index) {
+            this.guild = guild;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return index == key.index && guild.equals(key.guild);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(guild, index);
+        }
+    }
+
+    private static final class Entry {
+        private final Guild guild;
+        private final int index;
+        private final Inventory inventory;
+        private long lastUsed;
+        private int hash;
+        private boolean upgrade;
+        private boolean open;
+        private boolean unloaded;
+        // Sequence of the last copy taken and the last one written to the guild
+        private long copied;
+        private long written;
+
+        private Entry(Guild guild, int index, Inventory inventory) {
+            this.guild = guild;
+            this.index = index;
+            this.inventory = inventory;
+            this.hash = Arrays.hashCode(inventory.getContents());
+        }
+    }
+}
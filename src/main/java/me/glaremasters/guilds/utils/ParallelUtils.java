@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public final class ParallelUtils {
+
+    /**
+     * The most threads used for bulk work, so loading data never takes over every core of the server
+     */
+    private static final int MAX_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+    private ParallelUtils() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Map every input in parallel on a bounded fork-join pool, dropping null results.
+     *
+     * @param input    the values to map.
+     * @param function the mapping function, must be thread safe.
+     * @return the non null results, in the order of the input.
+     * @throws IOException if the function threw or the work was interrupted.
+     */
+    public static <T, R> List<R> map(Collection<T> input, Function<T, R> function) throws IOException {
+        return run(() -> input.parallelStream().map(function).filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+
+    /**
+     * Run an action for every input in parallel on a bounded fork-join pool.
+     *
+     * @param input  the values to handle.
+     * @param action the action, must be thread safe.
+     * @throws IOException if the action threw or the work was interrupted.
+     */
+    public static <T> void forEach(Collection<T> input, Consumer<T> action) throws IOException {
+        run(() -> {
+            input.parallelStream().forEach(action);
+            return null;
+        });
+    }
+
+    /**
+     * Map a stream of inputs in parallel batches on a bounded fork-join pool while the input is still being read.
+     * Only a few batches of input are held at once, the reading thread waits when the workers fall behind.
+     *
+     * @param input     the values to map, read on the calling thread.
+     * @param function  the mapping function, must be thread safe.
+     * @param batchSize how many inputs are handed to a worker at once.
+     * @return the non null results, in the order of the input.
+     * @throws IOException if the function threw or the work was interrupted.
+     */
+    public static <T, R> List<R> mapStream(Iterator<T> input, Function<T, R> function, int batchSize) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(MAX_THREADS);
+        Semaphore inFlight = new Semaphore(MAX_THREADS * 2);
+        List<Future<List<R>>> batches = new ArrayList<>();
+        try {
+            List<T> batch = new ArrayList<>(batchSize);
+            while (input.hasNext()) {
+                batch.add(input.next());
+                if (batch.size() >= batchSize || !input.hasNext()) {
+                    List<T> work = batch;
+                    inFlight.acquire();
+                    batches.add(pool.submit(() -> {
+                        try {
+                            List<R> results = new ArrayList<>(work.size());
+                            for (T value : work) {
+                                R result = function.apply(value);
+                                if (result != null) {
+                                    results.add(result);
+                                }
+                            }
+                            return results;
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            List<R> results = new ArrayList<>();
+            for (Future<List<R>> future : batches) {
+                results.addAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running parallel task", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static <R> R run(Callable<R> task) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(MAX_THREADS);
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running parallel task", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
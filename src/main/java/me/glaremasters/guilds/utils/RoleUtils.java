@@ -43,7 +43,7 @@ public class RoleUtils {
      * @return if in guild or not
      */
     public static boolean inGuild(Guild guild, OfflinePlayer player) {
-        return guild.getMember(player.getUniqueId()) != null;
+        return guild.isMember(player.getUniqueId());
     }
 
     /**
@@ -31,9 +31,17 @@ import org.bukkit.Bukkit;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by GlareMasters
@@ -42,10 +50,54 @@ import java.util.Map;
  */
 public class Serialization {
 
+    /**
+     * Marks vaults stored in the compressed binary format, anything else is the old JSON format
+     */
+    private static final String BINARY_PREFIX = "gz1:";
+
     private Serialization() {}
 
     public static String serializeInventory(Inventory inventory) {
-        return serializeInventory(inventory.getSize(), inventory.getContents());
+        return serializeInventoryBinary(inventory.getSize(), inventory.getContents());
+    }
+
+    /**
+     * Serialize the inventory to gzipped Bukkit object stream bytes, only non empty slots are written
+     * @param size size of inventory
+     * @param items the items to be serialized
+     * @return serialized inventory
+     */
+    public static String serializeInventoryBinary(int size, ItemStack[] items) {
+        int count = 0;
+        for (ItemStack item : items) {
+            if (item != null) {
+                count++;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(size);
+            out.writeInt(count);
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] != null) {
+                    out.writeShort(i);
+                    out.writeObject(items[i]);
+                }
+            }
+        } catch (IOException e) {
+            // Only thrown for items that can't be serialized at all, the JSON format can't store those either
+            throw new IllegalStateException("Unable to serialize inventory", e);
+        }
+        return BINARY_PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Check if a stored inventory still uses the old JSON format
+     * @param serialized the stored inventory
+     * @return true if it should be written again in the binary format
+     */
+    public static boolean isLegacy(String serialized) {
+        return serialized != null && !serialized.startsWith(BINARY_PREFIX);
     }
 
     /**
@@ -79,6 +131,9 @@ public class Serialization {
      * @throws InvalidConfigurationException
      */
     public static Inventory deserializeInventory(String jsons, String title, SettingsManager settingsManager) throws InvalidConfigurationException {
+        if (!isLegacy(jsons)) {
+            return deserializeInventoryBinary(jsons, settingsManager);
+        }
         try {
             JsonConfiguration json = new JsonConfiguration();
             json.loadFromString(jsons);
@@ -100,6 +155,29 @@ public class Serialization {
         }
     }
 
+    /**
+     * Deserialize the inventory from the binary format
+     * @param serialized the stored inventory, including its prefix
+     * @return the deserialized inventory
+     * @throws InvalidConfigurationException if the data is damaged
+     */
+    private static Inventory deserializeInventoryBinary(String serialized, SettingsManager settingsManager) throws InvalidConfigurationException {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(serialized.substring(BINARY_PREFIX.length()));
+            try (BukkitObjectInputStream in = new BukkitObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+                int size = in.readInt();
+                Inventory inventory = Bukkit.createInventory(null, size, StringUtils.color(settingsManager.getProperty(GuildVaultSettings.VAULT_NAME)));
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    inventory.setItem(in.readShort(), (ItemStack) in.readObject());
+                }
+                return inventory;
+            }
+        } catch (IOException | ClassNotFoundException | IllegalArgumentException | ClassCastException e) {
+            throw new InvalidConfigurationException("Unable to read vault", e);
+        }
+    }
+
 
 
 }
@@ -175,8 +175,7 @@ class ACFHandler(private val plugin: Guilds, private val commandManager: PaperCo
             if (guild.vaults == null) {
                 return@registerCompletion null
             }
-            val list = guildHandler.vaults[guild] ?: return@registerCompletion null
-            (1 until list.size).map(Any::toString)
+            (1 until guild.vaults.size).map(Any::toString)
         }
     }
 
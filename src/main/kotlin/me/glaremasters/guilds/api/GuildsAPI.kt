@@ -66,9 +66,9 @@ class GuildsAPI(val guildHandler: GuildHandler, val cooldownHandler: CooldownHan
      * Get a copy of one of a guild's vaults
      * @param guild the guild to get the vault of
      * @param vaultNumber which vault to get
-     * @return guild vault
+     * @return guild vault, or null if the stored vault can't be read
      */
-    fun getGuildVault(guild: Guild, vaultNumber: Int): Inventory {
+    fun getGuildVault(guild: Guild, vaultNumber: Int): Inventory? {
         return guildHandler.getGuildVault(guild, vaultNumber)
     }
 
@@ -52,7 +52,7 @@ class ArenaHandler(private val guilds: Guilds) {
     }
 
     fun loadArenas() {
-        guilds.database.arenaAdapter.allArenas.forEach(this::addArena)
+        (guilds.snapshot?.arenas ?: guilds.database.arenaAdapter.allArenas).forEach(this::addArena)
     }
 
     fun saveArenas() {
@@ -79,7 +79,6 @@ internal class CommandAdminRemove : BaseCommand() {
                 }
 
                 guildHandler.removePermsFromAll(permission, guild, async)
-                guildHandler.removeAlliesOnDelete(guild)
                 guildHandler.notifyAllies(guild, currentCommandManager)
                 ClaimUtils.deleteWithGuild(guild, settingsManager)
                 guild.sendMessage(currentCommandManager, Messages.LEAVE__GUILDMASTER_LEFT, "{player}", guild.guildMaster.name)
@@ -53,6 +53,7 @@ internal class CommandAdminScore : BaseCommand() {
     @Syntax("<%syntax> <amount>")
     fun setWins(issuer: CommandIssuer, @Flags("other") @Values("@guilds") guild: Guild, amount: Int) {
         guild.guildScore.wins = amount
+        guild.markDirty()
         currentCommandIssuer.sendInfo(Messages.ADMIN__SCORE_SETWINS, "{guild}", guild.name, "{amount}", amount.toString())
     }
 
@@ -63,6 +64,7 @@ internal class CommandAdminScore : BaseCommand() {
     @Syntax("<%syntax> <amount>")
     fun setLoses(issuer: CommandIssuer, @Flags("other") @Values("@guilds") guild: Guild, amount: Int) {
         guild.guildScore.loses = amount
+        guild.markDirty()
         currentCommandIssuer.sendInfo(Messages.ADMIN__SCORE_SETLOSES, "{guild}", guild.name, "{amount}", amount.toString())
     }
 
@@ -70,8 +72,9 @@ internal class CommandAdminScore : BaseCommand() {
     @Description("{@@descriptions.admin-score-resetall}")
     @CommandPermission(Constants.ADMIN_PERM)
     fun resetAll(issuer: CommandIssuer) {
-        guildHandler.guilds.forEach { guild ->
+        guildHandler.allGuilds.forEach { guild ->
             guild.guildScore.reset()
+            guild.markDirty()
         }
         currentCommandIssuer.sendInfo(Messages.ADMIN__SCORE_RESETALL)
     }
@@ -111,9 +111,9 @@ internal class CommandConsole : BaseCommand() {
                             throw ExpectationNotMet(Messages.MIGRATE__CONNECTION_FAILED)
                         }
 
-                        resolvedAdapter.guildAdapter.saveGuilds(guildHandler.guilds)
+                        resolvedAdapter.guildAdapter.saveGuilds(guildHandler.allGuilds)
                         resolvedAdapter.arenaAdapter.saveArenas(arenaHandler.getArenas())
-                        resolvedAdapter.cooldownAdapter.saveCooldowns(cooldownHandler.cooldowns.values)
+                        resolvedAdapter.cooldownAdapter.saveCooldowns(cooldownHandler.activeCooldowns.values)
                         resolvedAdapter.challengeAdapter.saveChallenges(challengeHandler.challenges)
 
                         val old = guilds.database
@@ -157,7 +157,7 @@ internal class CommandConsole : BaseCommand() {
         actionHandler.addAction(issuer.getIssuer(), object : ConfirmAction {
             override fun accept() {
                 val wrapper = WorldGuardWrapper.getInstance()
-                guildHandler.guilds.forEach { guild ->
+                guildHandler.allGuilds.forEach { guild ->
                     if (ClaimUtils.checkAlreadyExist(wrapper, guild)) {
                         ClaimUtils.removeClaim(wrapper, guild)
                     }
@@ -68,7 +68,7 @@ internal class CommandGUI : BaseCommand() {
     @Syntax("")
     @CommandPermission(Constants.BASE_PERM + "list")
     fun list(player: Player) {
-        guilds.guiHandler.list.get.open(player)
+        guilds.guiHandler.list.open(player)
     }
 
     @Subcommand("members")
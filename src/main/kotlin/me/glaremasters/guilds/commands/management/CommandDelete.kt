@@ -77,7 +77,6 @@ internal class CommandDelete : BaseCommand() {
                 }
 
                 guildHandler.removePermsFromAll(permission, guild, settingsManager.getProperty(PluginSettings.RUN_VAULT_ASYNC))
-                guildHandler.removeAlliesOnDelete(guild)
                 guildHandler.notifyAllies(guild, currentCommandManager)
                 guild.sendMessage(currentCommandManager, Messages.LEAVE__GUILDMASTER_LEFT, "{player}", player.name)
                 ClaimUtils.deleteWithGuild(guild, settingsManager)
@@ -101,7 +101,6 @@ internal class CommandLeave : BaseCommand() {
                     guild.sendMessage(currentCommandManager, Messages.LEAVE__GUILDMASTER_LEFT, "{player}", name)
                     currentCommandIssuer.sendInfo(Messages.LEAVE__SUCCESSFUL)
                     guildHandler.removePermsFromAll(permission, guild, async)
-                    guildHandler.removeAlliesOnDelete(guild)
                     guildHandler.notifyAllies(guild, currentCommandManager)
                     cooldownHandler.addCooldown(player, cooldownName, cooldownTime, TimeUnit.SECONDS)
                     ClaimUtils.deleteWithGuild(guild, settingsManager)
@@ -8,7 +8,7 @@ import org.bukkit.Location
  * Date: 2/14/2019
  * Time: 9:33 AM
  */
-class GuildHome(private val world: String, private val x: Double, private val y: Double, private val z: Double, private val yaw: Float, private val pitch: Float) {
+class GuildHome(val world: String, val x: Double, val y: Double, val z: Double, val yaw: Float, val pitch: Float) {
 
     val asLocation: Location
         get() = Location(Bukkit.getWorld(world), x, y, z, yaw, pitch)
@@ -5,9 +5,27 @@ import org.bukkit.Bukkit
 import org.bukkit.OfflinePlayer
 import org.bukkit.entity.Player
 
-class GuildMember(val uuid: UUID, var role: GuildRole) {
+class GuildMember(val uuid: UUID, role: GuildRole) {
+    @Transient
+    var owner: Guild? = null
+
+    var role: GuildRole = role
+        set(value) {
+            field = value
+            owner?.memberChanged(this)
+        }
+
     var joinDate: Long = 0
+        set(value) {
+            field = value
+            owner?.memberChanged(this)
+        }
+
     var lastLogin: Long = 0
+        set(value) {
+            field = value
+            owner?.memberChanged(this)
+        }
 
     val isOnline: Boolean
         get() = asOfflinePlayer.isOnline
@@ -32,41 +32,92 @@ import me.glaremasters.guilds.configuration.sections.GuildListSettings
 import me.glaremasters.guilds.exte.addBottom
 import me.glaremasters.guilds.guild.Guild
 import me.glaremasters.guilds.guild.GuildHandler
+import me.glaremasters.guilds.guild.GuildIndex
+import me.glaremasters.guilds.guild.GuildRegistry
 import me.glaremasters.guilds.guild.GuildSkull
 import me.glaremasters.guilds.utils.EconomyUtils
 import me.glaremasters.guilds.utils.GuiUtils
 import me.glaremasters.guilds.utils.StringUtils
 import me.mattstudios.mfgui.gui.guis.GuiItem
 import me.mattstudios.mfgui.gui.guis.PaginatedGui
+import org.bukkit.entity.HumanEntity
 
 class ListGUI(private val guilds: Guilds, private val settingsManager: SettingsManager, private val guildHandler: GuildHandler) {
     private val items: MutableList<GuiItem>
 
     val get: PaginatedGui
         get() {
-            val name = settingsManager.getProperty(GuildListSettings.GUILD_LIST_NAME)
-            val gui = PaginatedGui(guilds, 6, 45, StringUtils.color(name))
-
-            gui.setDefaultClickAction { event ->
-                event.isCancelled = true
-            }
+            val gui = createGui()
 
             createListItems(gui)
             addBottom(gui)
-            createButtons(gui)
+            createButtons(gui, { gui.nextPage() }, { gui.prevPage() })
 
             return gui
         }
 
-    private fun createButtons(gui: PaginatedGui) {
+    /**
+     * Open the guild list. In lazy mode the pages are built from the guild index and only the guilds
+     * on the page being opened are loaded, so looking through the list never loads every guild.
+     *
+     * @param entity the player opening the list
+     */
+    fun open(entity: HumanEntity) {
+        if (guildHandler.isLazy) openPage(entity, 0) else get.open(entity)
+    }
+
+    private fun openPage(entity: HumanEntity, page: Int) {
+        val entries = sortedEntries()
+        val pages = maxOf(1, (entries.size + PAGE_SIZE - 1) / PAGE_SIZE)
+        val current = page.coerceIn(0, pages - 1)
+        val ids = entries.drop(current * PAGE_SIZE).take(PAGE_SIZE).map { it.id }
+        val loaded = ArrayList<Guild>(ids.size)
+
+        Guilds.newChain<Any>().async {
+            // Deleted guilds come back as null and are left out
+            ids.mapNotNullTo(loaded) { guildHandler.getGuild(it) }
+        }.sync {
+            val gui = createGui()
+            loaded.forEach { guild -> setListItem(guild) }
+            items.forEach { item -> gui.addItem(item) }
+            items.clear()
+            addBottom(gui)
+            createButtons(gui, { if (current + 1 < pages) openPage(entity, current + 1) }, { if (current > 0) openPage(entity, current - 1) })
+            gui.open(entity)
+        }.execute()
+    }
+
+    /**
+     * Order the index entries for the lazy list, only the name and member count are known without loading a guild
+     */
+    private fun sortedEntries(): List<GuildIndex.Entry> {
+        val entries = guildHandler.index.entries.toMutableList()
+        when (settingsManager.getProperty(GuildListSettings.GUILD_LIST_SORT).toUpperCase()) {
+            "MEMBERS" -> entries.sortWith(Comparator.comparingInt { e: GuildIndex.Entry -> e.members.size }.reversed())
+            else -> entries.sortWith(Comparator.comparing { e: GuildIndex.Entry -> GuildRegistry.normalize(e.name ?: "") })
+        }
+        return entries
+    }
+
+    private fun createGui(): PaginatedGui {
+        val name = settingsManager.getProperty(GuildListSettings.GUILD_LIST_NAME)
+        val gui = PaginatedGui(guilds, 6, PAGE_SIZE, StringUtils.color(name))
+
+        gui.setDefaultClickAction { event ->
+            event.isCancelled = true
+        }
+        return gui
+    }
+
+    private fun createButtons(gui: PaginatedGui, nextPage: () -> Unit, prevPage: () -> Unit) {
         val next = GuiItem(GuiUtils.createItem(settingsManager.getProperty(GuildListSettings.GUILD_LIST_NEXT_PAGE_ITEM), settingsManager.getProperty(GuildListSettings.GUILD_LIST_NEXT_PAGE_ITEM_NAME), emptyList()))
         next.setAction {
-            gui.nextPage()
+            nextPage()
         }
 
         val back = GuiItem(GuiUtils.createItem(settingsManager.getProperty(GuildListSettings.GUILD_LIST_PREVIOUS_PAGE_ITEM), settingsManager.getProperty(GuildListSettings.GUILD_LIST_PREVIOUS_PAGE_ITEM_NAME), emptyList()))
         back.setAction {
-            gui.prevPage()
+            prevPage()
         }
 
         gui.setItem(6, 9, next)
@@ -74,7 +125,7 @@ class ListGUI(private val guilds: Guilds, private val settingsManager: SettingsM
     }
 
     private fun createListItems(gui: PaginatedGui) {
-        val guilds = guildHandler.guilds
+        val guilds = guildHandler.guilds.toMutableList()
 
         when (settingsManager.getProperty(GuildListSettings.GUILD_LIST_SORT).toUpperCase()) {
             "TIER" -> guilds.sortWith(Comparator.comparingInt { g: Guild -> g.tier.level }.reversed())
@@ -161,4 +212,8 @@ class ListGUI(private val guilds: Guilds, private val settingsManager: SettingsM
     init {
         items = ArrayList()
     }
+
+    companion object {
+        private const val PAGE_SIZE = 45
+    }
 }
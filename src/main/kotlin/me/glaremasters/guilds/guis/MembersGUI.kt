@@ -52,7 +52,7 @@ class MembersGUI(private val guilds: Guilds, private val settingsManager: Settin
             event.isCancelled = true
             val player = event.whoClicked as Player
             val playerGuild = guildHandler.getGuild(player)
-            if (playerGuild == null) guilds.guiHandler.list.get.open(event.whoClicked) else guilds.guiHandler.info.get(playerGuild, player).open(event.whoClicked)
+            if (playerGuild == null) guilds.guiHandler.list.open(event.whoClicked) else guilds.guiHandler.info.get(playerGuild, player).open(event.whoClicked)
         }
 
         addItems(gui, guild)
@@ -30,6 +30,7 @@ import me.glaremasters.guilds.configuration.sections.VaultPickerSettings
 import me.glaremasters.guilds.exte.addBackground
 import me.glaremasters.guilds.guild.Guild
 import me.glaremasters.guilds.guild.GuildHandler
+import me.glaremasters.guilds.messages.Messages
 import me.glaremasters.guilds.utils.GuiBuilder
 import me.glaremasters.guilds.utils.GuiUtils
 import me.glaremasters.guilds.utils.StringUtils
@@ -82,12 +83,16 @@ class VaultGUI(private val guilds: Guilds, private val settingsManager: Settings
 
             item.setAction { event ->
                 event.isCancelled = true
-                try {
+                val vault = try {
                     guildHandler.getGuildVault(guild, event.rawSlot + 1)
                 } catch (ex: IndexOutOfBoundsException) {
-                    guildHandler.vaults[guild]?.add(guildHandler.createNewVault(settingsManager))
+                    guildHandler.addGuildVault(guild)
                 }
-                player.openInventory(guildHandler.getGuildVault(guild, event.rawSlot + 1))
+                if (vault == null) {
+                    guilds.commandManager.getCommandIssuer(player).sendInfo(Messages.VAULTS__UNREADABLE)
+                    return@setAction
+                }
+                player.openInventory(vault)
                 guildHandler.opened.add(player)
             }
 
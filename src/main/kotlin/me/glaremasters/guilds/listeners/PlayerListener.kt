@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit
 import me.glaremasters.guilds.Guilds
 import me.glaremasters.guilds.configuration.sections.GuildSettings
 import me.glaremasters.guilds.configuration.sections.PluginSettings
+import me.glaremasters.guilds.configuration.sections.StorageSettings
 import me.glaremasters.guilds.guild.GuildHandler
 import me.glaremasters.guilds.messages.Messages
 import me.glaremasters.guilds.utils.StringUtils
@@ -41,6 +42,7 @@ import org.bukkit.event.EventHandler
 import org.bukkit.event.EventPriority
 import org.bukkit.event.Listener
 import org.bukkit.event.player.AsyncPlayerChatEvent
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent
 import org.bukkit.event.player.PlayerJoinEvent
 import org.bukkit.event.player.PlayerQuitEvent
 import org.bukkit.event.player.PlayerRespawnEvent
@@ -48,6 +50,14 @@ import org.bukkit.event.player.PlayerRespawnEvent
 class PlayerListener(private val guilds: Guilds, private val settingsManager: SettingsManager, private val guildHandler: GuildHandler, private val permission: Permission) : Listener {
     private val informed = mutableSetOf<UUID>()
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    fun AsyncPlayerPreLoginEvent.onPrefetch() {
+        if (loginResult != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return
+        }
+        guildHandler.prefetch(uniqueId, settingsManager.getProperty(StorageSettings.LOGIN_PREFETCH_TIMEOUT).toLong())
+    }
+
     @EventHandler
     fun PlayerJoinEvent.onJoin() {
         if (!settingsManager.getProperty(PluginSettings.ANNOUNCEMENTS_IN_GAME)) {
@@ -115,11 +125,21 @@ class PlayerListener(private val guilds: Guilds, private val settingsManager: Se
         }
     }
 
+    @EventHandler(priority = EventPriority.LOWEST)
+    fun PlayerJoinEvent.onOnlineJoin() {
+        guildHandler.memberLogin(player)
+    }
+
     @EventHandler
     fun PlayerQuitEvent.onChatLeave() {
         guildHandler.chatLogout(player)
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    fun PlayerQuitEvent.onOnlineLeave() {
+        guildHandler.memberLogout(player)
+    }
+
     @EventHandler
     fun PlayerJoinEvent.onPermCheck() {
         guildHandler.addPerms(permission, player, settingsManager.getProperty(PluginSettings.RUN_VAULT_ASYNC))
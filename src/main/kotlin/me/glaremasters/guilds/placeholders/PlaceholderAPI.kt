@@ -66,7 +66,7 @@ class PlaceholderAPI(private val guildHandler: GuildHandler) : PlaceholderExpans
             "master" -> guild.guildMaster.asOfflinePlayer.name.toString()
             "member_count" -> guild.members.size.toString()
             "prefix" -> guild.prefix
-            "members_online" -> guild.onlineMembers.size.toString()
+            "members_online" -> guild.onlineCount.toString()
             "status" -> guild.status.name
             "role" -> guild.getMember(player.uniqueId).role.name
             "tier" -> guild.tier.level.toString()
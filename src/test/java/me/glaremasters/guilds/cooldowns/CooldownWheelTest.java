@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.cooldowns;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CooldownWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long START = 1_600_000_000_000L;
+    // Four levels of 64 slots
+    private static final long MAX_DELTA = (1L << 24) - 1;
+
+    private final CooldownWheel wheel = new CooldownWheel(TICK, START);
+
+    private CooldownWheel.Node add(long expiry) {
+        CooldownWheel.Node node = new CooldownWheel.Node(new Cooldown(Cooldown.Type.Home, UUID.randomUUID(), expiry));
+        wheel.add(node);
+        return node;
+    }
+
+    private List<CooldownWheel.Node> advance(long now) {
+        List<CooldownWheel.Node> expired = new ArrayList<>();
+        wheel.advance(now, expired::add);
+        return expired;
+    }
+
+    @Test
+    void expiresOnTheTickItIsDue() {
+        CooldownWheel.Node node = add(START + 5 * TICK);
+
+        assertTrue(advance(START + 5 * TICK - 1).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(node, advance(START + 5 * TICK).get(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void partialTicksRoundUp() {
+        add(START + 5 * TICK + 500);
+
+        assertTrue(advance(START + 5 * TICK).isEmpty());
+        assertEquals(1, advance(START + 6 * TICK).size());
+    }
+
+    @Test
+    void alreadyExpiredFiresOnTheNextTick() {
+        add(START - 10 * TICK);
+
+        assertTrue(advance(START).isEmpty());
+        assertEquals(1, advance(START + TICK).size());
+    }
+
+    @Test
+    void expiresExactlyAcrossLevelCascades() {
+        // Delays in ticks on both sides of every level boundary
+        long[] delays = {1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 262143, 262144, 262145, 300000};
+        Map<CooldownWheel.Node, Long> due = new HashMap<>();
+        for (long delay : delays) {
+            due.put(add(START + delay * TICK), delay);
+        }
+
+        long last = delays[delays.length - 1];
+        for (long t = 1; t <= last; t++) {
+            long tick = t;
+            wheel.advance(START + t * TICK, node -> assertEquals((Long) tick, due.remove(node), "expired on the wrong tick"));
+        }
+        assertTrue(due.isEmpty(), "not every cooldown expired");
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void expiresPastTheReachOfTheWheel() {
+        long far = START + (MAX_DELTA + 1000) * TICK;
+        long farther = START + (3 * MAX_DELTA) * TICK + 250;
+        CooldownWheel.Node first = add(far);
+        CooldownWheel.Node second = add(farther);
+
+        assertTrue(advance(far - 1).isEmpty());
+        List<CooldownWheel.Node> expired = advance(far);
+        assertEquals(1, expired.size());
+        assertEquals(first, expired.get(0));
+
+        assertTrue(advance(farther - 250).isEmpty());
+        expired = advance(farther - 250 + TICK);
+        assertEquals(1, expired.size());
+        assertEquals(second, expired.get(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void removedNodesNeverExpire() {
+        CooldownWheel.Node removed = add(START + 3 * TICK);
+        CooldownWheel.Node kept = add(START + 3 * TICK);
+        CooldownWheel.Node later = add(START + 5000 * TICK);
+
+        wheel.remove(removed);
+        wheel.remove(later);
+        // Removing twice is ignored
+        wheel.remove(removed);
+        assertEquals(1, wheel.size());
+
+        List<CooldownWheel.Node> expired = advance(START + 10000 * TICK);
+        assertEquals(1, expired.size());
+        assertEquals(kept, expired.get(0));
+        assertFalse(expired.contains(later));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void oneBigStepExpiresEverythingDue() {
+        add(START + 10 * TICK);
+        add(START + 200 * TICK);
+        add(START + 70000 * TICK);
+        CooldownWheel.Node notDue = add(START + 100000 * TICK);
+
+        List<CooldownWheel.Node> expired = advance(START + 80000 * TICK);
+
+        assertEquals(3, expired.size());
+        assertFalse(expired.contains(notDue));
+        assertEquals(1, wheel.size());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.adapters;
+
+import com.google.gson.Gson;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildCode;
+import me.glaremasters.guilds.guild.GuildHome;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildRole;
+import me.glaremasters.guilds.guild.GuildScore;
+import me.glaremasters.guilds.guild.GuildSkull;
+import me.glaremasters.guilds.guild.GuildTier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GuildTypeAdapterTest {
+
+    private final Gson gson = StorageGson.create();
+
+    private static GuildMember member(UUID uuid, int level, long joinDate, long lastLogin) {
+        GuildMember member = new GuildMember(uuid, new GuildRole("", "", level));
+        member.setJoinDate(joinDate);
+        member.setLastLogin(lastLogin);
+        return member;
+    }
+
+    private static Guild sampleGuild() {
+        GuildMember master = member(UUID.randomUUID(), 0, 1580000000000L, 1600000000000L);
+        GuildMember officer = member(UUID.randomUUID(), 1, 1580000001000L, 1600000001000L);
+        GuildScore score = new GuildScore();
+        score.setWins(14);
+        score.setLoses(6);
+        Guild guild = Guild.builder()
+                .id(UUID.randomUUID())
+                .name("&aKnights")
+                .prefix("KNT")
+                .motd("Welcome \"home\" <3")
+                .guildMaster(master)
+                .home(new GuildHome("world", 152.5, 64, -380.5, 90f, 12.5f))
+                .guildSkull(GuildSkull.fromSerialized("eyJ0ZXh0dXJlcyI6e319=="))
+                .status(Guild.Status.Private)
+                .tier(GuildTier.builder().level(2).build())
+                .guildScore(score)
+                .balance(125430.75)
+                .members(new ArrayList<>(Arrays.asList(master, officer)))
+                .invitedMembers(new ArrayList<>(Collections.singletonList(UUID.randomUUID())))
+                .allies(new ArrayList<>(Arrays.asList(UUID.randomUUID(), UUID.randomUUID())))
+                .pendingAllies(new ArrayList<>(Collections.singletonList(UUID.randomUUID())))
+                .codes(new ArrayList<>(Collections.singletonList(new GuildCode("aB3kQ9zX", 5, master.getUuid(), new ArrayList<>(Collections.singletonList(officer.getUuid()))))))
+                .vaults(new ArrayList<>(Collections.singletonList("rO0ABXNyAA==")))
+                .lastDefended(1590000000000L)
+                .build();
+        guild.setCreationDate(1570000000000L);
+        return guild;
+    }
+
+    private static void assertMemberEquals(GuildMember expected, GuildMember actual) {
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getRole().getLevel(), actual.getRole().getLevel());
+        assertEquals(expected.getJoinDate(), actual.getJoinDate());
+        assertEquals(expected.getLastLogin(), actual.getLastLogin());
+    }
+
+    @Test
+    void roundTripKeepsEveryField() {
+        Guild guild = sampleGuild();
+
+        Guild read = gson.fromJson(gson.toJson(guild), Guild.class);
+
+        assertEquals(guild.getId(), read.getId());
+        assertEquals(guild.getName(), read.getName());
+        assertEquals(guild.getPrefix(), read.getPrefix());
+        assertEquals(guild.getMotd(), read.getMotd());
+        assertMemberEquals(guild.getGuildMaster(), read.getGuildMaster());
+        assertEquals("world", read.getHome().getWorld());
+        assertEquals(152.5, read.getHome().getX());
+        assertEquals(64.0, read.getHome().getY());
+        assertEquals(-380.5, read.getHome().getZ());
+        assertEquals(90f, read.getHome().getYaw());
+        assertEquals(12.5f, read.getHome().getPitch());
+        assertEquals(guild.getGuildSkull().getSerialized(), read.getGuildSkull().getSerialized());
+        assertEquals(Guild.Status.Private, read.getStatus());
+        assertEquals(2, read.getTier().getLevel());
+        assertEquals(14, read.getGuildScore().getWins());
+        assertEquals(6, read.getGuildScore().getLoses());
+        assertEquals(guild.getBalance(), read.getBalance());
+        assertEquals(guild.getMembers().size(), read.getMembers().size());
+        for (int i = 0; i < guild.getMembers().size(); i++) {
+            assertMemberEquals(guild.getMembers().get(i), read.getMembers().get(i));
+        }
+        assertEquals(guild.getInvitedMembers(), read.getInvitedMembers());
+        assertEquals(guild.getAllies(), read.getAllies());
+        assertEquals(guild.getPendingAllies(), read.getPendingAllies());
+        GuildCode code = read.getCodes().get(0);
+        assertEquals("aB3kQ9zX", code.getId());
+        assertEquals(5, code.getUses());
+        assertEquals(guild.getGuildMaster().getUuid(), code.getCreator());
+        assertEquals(guild.getCodes().get(0).getRedeemers(), code.getRedeemers());
+        assertEquals(guild.getVaults(), read.getVaults());
+        assertEquals(guild.getLastDefended(), read.getLastDefended());
+        assertEquals(guild.getCreationDate(), read.getCreationDate());
+        assertFalse(read.isDirty());
+    }
+
+    @Test
+    void writingAgainGivesTheSameJson() {
+        String json = gson.toJson(sampleGuild());
+
+        assertEquals(json, gson.toJson(gson.fromJson(json, Guild.class)));
+    }
+
+    @Test
+    void outputIsCompactAndUnescaped() {
+        String json = gson.toJson(sampleGuild());
+
+        assertFalse(json.contains("\n"));
+        assertTrue(json.contains("\"rO0ABXNyAA==\""));
+        assertTrue(json.contains("<3"));
+    }
+
+    @Test
+    void readsThePrettyPrintedReflectiveFormat() {
+        String uuid = "5a0e0f6e-2d4c-4f1e-9a7b-3c2d1e0f9a8b";
+        String ally = "0b1c2d3e-4f50-6172-8394-a5b6c7d8e9f0";
+        String json = "{\n" +
+                "  \"id\": \"" + uuid + "\",\n" +
+                "  \"name\": \"Knights\",\n" +
+                "  \"prefix\": \"KNT\",\n" +
+                "  \"guildMaster\": {\n" +
+                "    \"uuid\": \"" + uuid + "\",\n" +
+                "    \"role\": {\n" +
+                "      \"level\": 0\n" +
+                "    },\n" +
+                "    \"joinDate\": 1580000000000,\n" +
+                "    \"lastLogin\": 0\n" +
+                "  },\n" +
+                "  \"status\": \"Public\",\n" +
+                "  \"tier\": {\n" +
+                "    \"level\": 1\n" +
+                "  },\n" +
+                "  \"balance\": 10.5,\n" +
+                "  \"members\": [],\n" +
+                "  \"allies\": [\n" +
+                "    \"" + ally + "\"\n" +
+                "  ],\n" +
+                "  \"vaults\": [\n" +
+                "    \"rO0ABXNyAA\\u003d\\u003d\"\n" +
+                "  ],\n" +
+                "  \"home\": null,\n" +
+                "  \"someRemovedField\": {\n" +
+                "    \"nested\": [1, 2, 3]\n" +
+                "  },\n" +
+                "  \"lastDefended\": 0\n" +
+                "}";
+
+        Guild guild = gson.fromJson(json, Guild.class);
+
+        assertEquals(UUID.fromString(uuid), guild.getId());
+        assertEquals("Knights", guild.getName());
+        assertEquals(0, guild.getGuildMaster().getRole().getLevel());
+        assertEquals(1580000000000L, guild.getGuildMaster().getJoinDate());
+        assertEquals(Guild.Status.Public, guild.getStatus());
+        assertEquals(1, guild.getTier().getLevel());
+        assertEquals(10.5, guild.getBalance());
+        assertEquals(Collections.singletonList(UUID.fromString(ally)), guild.getAllies());
+        assertEquals(Collections.singletonList("rO0ABXNyAA=="), guild.getVaults());
+        assertNull(guild.getHome());
+        assertNull(guild.getMotd());
+        // Lists missing from the file come back empty
+        assertTrue(guild.getPendingAllies().isEmpty());
+        assertTrue(guild.getCodes().isEmpty());
+        assertFalse(guild.isDirty());
+    }
+}
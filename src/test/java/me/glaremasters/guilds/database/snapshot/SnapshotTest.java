@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.database.snapshot;
+
+import me.glaremasters.guilds.arena.Arena;
+import me.glaremasters.guilds.cooldowns.Cooldown;
+import me.glaremasters.guilds.guild.Guild;
+import me.glaremasters.guilds.guild.GuildCode;
+import me.glaremasters.guilds.guild.GuildHome;
+import me.glaremasters.guilds.guild.GuildMember;
+import me.glaremasters.guilds.guild.GuildRole;
+import me.glaremasters.guilds.guild.GuildSkull;
+import me.glaremasters.guilds.guild.GuildTier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotTest {
+
+    private static final long MARKER = 42L << 32 | 0xCAFEL;
+    private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(30);
+
+    @TempDir
+    Path folder;
+
+    private static Guild sampleGuild() {
+        GuildMember master = new GuildMember(UUID.randomUUID(), new GuildRole("", "", 0));
+        master.setJoinDate(1580000000000L);
+        master.setLastLogin(1600000000000L);
+        Guild guild = Guild.builder()
+                .id(UUID.randomUUID())
+                .name("Knights")
+                .prefix("KNT")
+                .motd(null)
+                .guildMaster(master)
+                .home(new GuildHome("world", 1.5, 64, -2.5, 90f, 0f))
+                .guildSkull(GuildSkull.fromSerialized("eyJ0ZXh0dXJlcyI6e319"))
+                .status(Guild.Status.Public)
+                .tier(GuildTier.builder().level(3).build())
+                .balance(99.5)
+                .members(new ArrayList<>(Collections.singletonList(master)))
+                .invitedMembers(new ArrayList<>())
+                .allies(new ArrayList<>(Collections.singletonList(UUID.randomUUID())))
+                .pendingAllies(new ArrayList<>())
+                .codes(new ArrayList<>(Collections.singletonList(new GuildCode("code", 2, master.getUuid(), new ArrayList<>()))))
+                .vaults(new ArrayList<>(Arrays.asList("first", "second")))
+                .lastDefended(5L)
+                .build();
+        guild.setCreationDate(1570000000000L);
+        guild.getGuildScore().setWins(3);
+        return guild;
+    }
+
+    private File write(List<Guild> guilds, List<Arena> arenas, List<Cooldown> cooldowns) throws IOException {
+        File file = folder.resolve(Snapshot.FILE_NAME).toFile();
+        SnapshotWriter.write(file, "MySQL", "guilds_", MARKER, guilds, arenas, cooldowns);
+        return file;
+    }
+
+    private File writeSample() throws IOException {
+        return write(Collections.singletonList(sampleGuild()), Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    void roundTripKeepsTheData() throws IOException {
+        Guild guild = sampleGuild();
+        Guild clean = sampleGuild();
+        clean.markClean();
+        Arena arena = new Arena(UUID.randomUUID(), "pit", "world;1;2;3", null, false);
+        Cooldown cooldown = new Cooldown(Cooldown.Type.Home, UUID.randomUUID(), 1700000000000L);
+        File file = write(Arrays.asList(guild, clean), Collections.singletonList(arena), Collections.singletonList(cooldown));
+
+        Snapshot snapshot = SnapshotReader.read(file, "MySQL", "guilds_", MARKER, MAX_AGE, Collections.emptyList());
+
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.getGuilds().size());
+        Guild read = snapshot.getGuilds().get(0);
+        assertEquals(guild.getId(), read.getId());
+        assertEquals("Knights", read.getName());
+        assertEquals("KNT", read.getPrefix());
+        assertNull(read.getMotd());
+        assertEquals(guild.getGuildMaster().getUuid(), read.getGuildMaster().getUuid());
+        assertEquals(1600000000000L, read.getGuildMaster().getLastLogin());
+        assertEquals(-2.5, read.getHome().getZ());
+        assertEquals(90f, read.getHome().getYaw());
+        assertEquals("eyJ0ZXh0dXJlcyI6e319", read.getGuildSkull().getSerialized());
+        assertEquals(Guild.Status.Public, read.getStatus());
+        assertEquals(3, read.getTier().getLevel());
+        assertEquals(3, read.getGuildScore().getWins());
+        assertEquals(99.5, read.getBalance());
+        assertEquals(1, read.getMembers().size());
+        assertEquals(0, read.getMembers().get(0).getRole().getLevel());
+        assertEquals(1580000000000L, read.getMembers().get(0).getJoinDate());
+        assertEquals(guild.getAllies(), read.getAllies());
+        assertEquals("code", read.getCodes().get(0).getId());
+        assertEquals(2, read.getCodes().get(0).getUses());
+        assertEquals(Arrays.asList("first", "second"), read.getVaults());
+        assertEquals(5L, read.getLastDefended());
+        assertEquals(1570000000000L, read.getCreationDate());
+        // Unsaved changes stay pending, saved guilds load clean
+        assertTrue(read.isDirty());
+        assertFalse(snapshot.getGuilds().get(1).isDirty());
+
+        assertEquals(Collections.singletonList(arena), snapshot.getArenas());
+        Cooldown readCooldown = snapshot.getCooldowns().get(0);
+        assertEquals(cooldown.getCooldownId(), readCooldown.getCooldownId());
+        assertEquals(Cooldown.Type.Home, readCooldown.getCooldownType());
+        assertEquals(cooldown.getCooldownOwner(), readCooldown.getCooldownOwner());
+        assertEquals(cooldown.getCooldownExpiry(), readCooldown.getCooldownExpiry());
+    }
+
+    @Test
+    void missingFileReadsAsNull() throws IOException {
+        File file = folder.resolve("missing.bin").toFile();
+
+        assertNull(SnapshotReader.read(file, "MySQL", "guilds_", MARKER, MAX_AGE, Collections.emptyList()));
+    }
+
+    @Test
+    void otherStorageIsStale() throws IOException {
+        File file = writeSample();
+
+        assertNull(SnapshotReader.read(file, "SQLite", "guilds_", MARKER, MAX_AGE, Collections.emptyList()));
+        assertNull(SnapshotReader.read(file, "MySQL", "other_", MARKER, MAX_AGE, Collections.emptyList()));
+    }
+
+    @Test
+    void changedStorageMarkerIsStale() throws IOException {
+        File file = writeSample();
+
+        assertNull(SnapshotReader.read(file, "MySQL", "guilds_", MARKER + 1, MAX_AGE, Collections.emptyList()));
+    }
+
+    @Test
+    void oldSnapshotIsStale() throws IOException {
+        File file = writeSample();
+
+        assertNull(SnapshotReader.read(file, "MySQL", "guilds_", MARKER, -1, Collections.emptyList()));
+    }
+
+    @Test
+    void changedJsonFilesMakeItStale() throws IOException {
+        File data = Files.createDirectories(folder.resolve("data")).toFile();
+        File file = writeSample();
+        File guild = new File(data, "guild.json");
+        Files.write(guild.toPath(), "{}".getBytes());
+        assertTrue(guild.setLastModified(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1)));
+
+        assertNull(SnapshotReader.read(file, "MySQL", "guilds_", MARKER, MAX_AGE, Collections.singletonList(data)));
+    }
+
+    @Test
+    void corruptBodyIsRejected() throws IOException {
+        File file = writeSample();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 1] ^= 0x5A;
+        Files.write(file.toPath(), bytes);
+
+        assertThrows(IOException.class, () -> SnapshotReader.read(file, "MySQL", "guilds_", MARKER, MAX_AGE, Collections.emptyList()));
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        File file = writeSample();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThrows(IOException.class, () -> SnapshotReader.read(file, "MySQL", "guilds_", MARKER, MAX_AGE, Collections.emptyList()));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllyGraphTest {
+
+    private final Map<UUID, Guild> guilds = new HashMap<>();
+    private AllyGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new AllyGraph(guilds::get);
+    }
+
+    private Guild guild(String name) {
+        Guild guild = Guild.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .prefix(name)
+                .members(new ArrayList<>())
+                .invitedMembers(new ArrayList<>())
+                .allies(new ArrayList<>())
+                .pendingAllies(new ArrayList<>())
+                .build();
+        guilds.put(guild.getId(), guild);
+        return guild;
+    }
+
+    @Test
+    void storedAlliesAreLinkedBothWays() {
+        Guild a = guild("a");
+        Guild b = guild("b");
+        a.getAllies().add(b.getId());
+
+        // Only one side has to be added for the edge to exist in both directions
+        graph.add(a);
+
+        assertTrue(graph.isAlly(a.getId(), b.getId()));
+        assertTrue(graph.isAlly(b.getId(), a.getId()));
+        assertTrue(graph.getAllies(b.getId()).contains(a.getId()));
+    }
+
+    @Test
+    void addAndRemoveAllyUpdateBothSides() {
+        Guild a = guild("a");
+        Guild b = guild("b");
+        graph.add(a);
+        graph.add(b);
+
+        a.addAlly(b);
+        b.addAlly(a);
+        assertTrue(graph.isAlly(a.getId(), b.getId()));
+        assertTrue(graph.isAlly(b.getId(), a.getId()));
+
+        a.removeAlly(b);
+        b.removeAlly(a);
+        assertFalse(graph.isAlly(a.getId(), b.getId()));
+        assertFalse(graph.isAlly(b.getId(), a.getId()));
+    }
+
+    @Test
+    void setAlliesReplacesTheEdges() {
+        Guild a = guild("a");
+        Guild b = guild("b");
+        Guild c = guild("c");
+        a.getAllies().add(b.getId());
+        graph.add(a);
+
+        a.setAllies(new ArrayList<>(Arrays.asList(c.getId())));
+
+        assertFalse(graph.isAlly(a.getId(), b.getId()));
+        assertFalse(graph.isAlly(b.getId(), a.getId()));
+        assertTrue(graph.isAlly(a.getId(), c.getId()));
+        assertTrue(graph.isAlly(c.getId(), a.getId()));
+    }
+
+    @Test
+    void pendingRequestsAreDirected() {
+        Guild sender = guild("sender");
+        Guild target = guild("target");
+        graph.add(sender);
+        graph.add(target);
+
+        target.addPendingAlly(sender);
+
+        assertTrue(graph.isPending(target.getId(), sender.getId()));
+        assertFalse(graph.isPending(sender.getId(), target.getId()));
+        assertTrue(target.isAllyPending(sender));
+
+        target.removePendingAlly(sender);
+        assertFalse(graph.isPending(target.getId(), sender.getId()));
+    }
+
+    @Test
+    void removeClearsAlliesAndRequestsOfOtherGuilds() {
+        Guild removed = guild("removed");
+        Guild ally = guild("ally");
+        Guild target = guild("target");
+        Guild sender = guild("sender");
+        removed.getAllies().add(ally.getId());
+        ally.getAllies().add(removed.getId());
+        target.getPendingAllies().add(removed.getId());
+        removed.getPendingAllies().add(sender.getId());
+        graph.add(removed);
+        graph.add(ally);
+        graph.add(target);
+        graph.add(sender);
+        ally.markClean();
+        target.markClean();
+
+        graph.remove(removed);
+
+        assertFalse(graph.isAlly(ally.getId(), removed.getId()));
+        assertFalse(graph.isAlly(removed.getId(), ally.getId()));
+        assertEquals(0, ally.getAllies().size());
+        assertTrue(ally.isDirty());
+        assertFalse(graph.isPending(target.getId(), removed.getId()));
+        assertEquals(0, target.getPendingAllies().size());
+        assertTrue(target.isDirty());
+        assertFalse(graph.isPending(removed.getId(), sender.getId()));
+    }
+
+    @Test
+    void removedGuildNoLongerUpdatesTheGraph() {
+        Guild a = guild("a");
+        Guild b = guild("b");
+        graph.add(a);
+        graph.add(b);
+
+        graph.remove(a);
+        a.addAlly(b);
+
+        assertFalse(graph.isAlly(a.getId(), b.getId()));
+        assertFalse(graph.isAlly(b.getId(), a.getId()));
+    }
+}
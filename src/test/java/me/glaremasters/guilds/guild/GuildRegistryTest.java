@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GuildRegistryTest {
+
+    private final GuildRegistry registry = new GuildRegistry();
+
+    private static Guild guild(String name, String prefix) {
+        return Guild.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .prefix(prefix)
+                .members(new ArrayList<>())
+                .invitedMembers(new ArrayList<>())
+                .allies(new ArrayList<>())
+                .pendingAllies(new ArrayList<>())
+                .build();
+    }
+
+    @Test
+    void normalizeStripsColorsAndCase() {
+        assertEquals("knights", GuildRegistry.normalize("Knights"));
+        assertEquals("knights", GuildRegistry.normalize("&aKnights"));
+        assertEquals("knights", GuildRegistry.normalize("§cKNIGHTS"));
+        assertEquals("the knights", GuildRegistry.normalize("&6&lThe &rKnights"));
+    }
+
+    @Test
+    void normalizeIgnoresTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            // A Turkish default locale would lower the capital I to a dotless i
+            assertEquals("knights", GuildRegistry.normalize("KNIGHTS"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void namesAreFoundIgnoringColorsAndCase() {
+        Guild guild = guild("&aKnights", "KNT");
+        registry.add(guild);
+
+        assertSame(guild, registry.getByName("knights"));
+        assertSame(guild, registry.getByName("KNIGHTS"));
+        assertSame(guild, registry.getByName("&cKnights"));
+        assertTrue(registry.nameExists("Knights"));
+        assertFalse(registry.nameExists("Knight"));
+    }
+
+    @Test
+    void prefixesAreFoundIgnoringColorsAndCase() {
+        Guild guild = guild("Knights", "&bKnT");
+        registry.add(guild);
+
+        assertSame(guild, registry.getByPrefix("knt"));
+        assertSame(guild, registry.getByPrefix("&4KNT"));
+        assertNull(registry.getByPrefix("kn"));
+    }
+
+    @Test
+    void renamingMovesTheIndexEntry() {
+        Guild guild = guild("Knights", "KNT");
+        registry.add(guild);
+
+        guild.setName("&eRiders");
+        guild.setPrefix("RDR");
+
+        assertNull(registry.getByName("knights"));
+        assertSame(guild, registry.getByName("riders"));
+        assertNull(registry.getByPrefix("knt"));
+        assertSame(guild, registry.getByPrefix("rdr"));
+    }
+
+    @Test
+    void clashingNamesKeepTheFirstGuild() {
+        Guild first = guild("Knights", "KNT");
+        Guild second = guild("&aKNIGHTS", "KN2");
+        registry.add(first);
+        registry.add(second);
+
+        assertSame(first, registry.getByName("knights"));
+
+        // Removing the second guild must not drop the key the first one owns
+        registry.remove(second);
+        assertSame(first, registry.getByName("knights"));
+    }
+
+    @Test
+    void guildListIsASnapshot() {
+        Guild first = guild("Knights", "KNT");
+        registry.add(first);
+        List<Guild> snapshot = registry.getGuilds();
+
+        registry.add(guild("Riders", "RDR"));
+
+        assertEquals(Collections.singletonList(first), snapshot);
+        assertEquals(2, registry.getGuilds().size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(first));
+    }
+
+    @Test
+    void removeClearsEveryIndex() {
+        UUID player = UUID.randomUUID();
+        Guild guild = guild("Knights", "KNT");
+        guild.setMembers(new ArrayList<>(Collections.singletonList(new GuildMember(player, new GuildRole("Member", "", 3)))));
+        registry.add(guild);
+        assertSame(guild, registry.getByMember(player));
+
+        registry.remove(guild);
+
+        assertNull(registry.getById(guild.getId()));
+        assertNull(registry.getByName("knights"));
+        assertNull(registry.getByPrefix("knt"));
+        assertNull(registry.getByMember(player));
+        assertEquals(0, registry.size());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Glare
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.glaremasters.guilds.guild;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LevelIndexTest {
+
+    private static GuildTier tier(int level) {
+        return GuildTier.builder().level(level).name("Tier " + level).build();
+    }
+
+    @Test
+    void getFindsEveryLevel() {
+        GuildTier one = tier(1);
+        GuildTier two = tier(2);
+        GuildTier five = tier(5);
+        LevelIndex<GuildTier> index = new LevelIndex<>(Arrays.asList(two, five, one), GuildTier::getLevel, false);
+
+        assertSame(one, index.get(1));
+        assertSame(two, index.get(2));
+        assertSame(five, index.get(5));
+    }
+
+    @Test
+    void getReturnsNullForMissingLevels() {
+        LevelIndex<GuildTier> index = new LevelIndex<>(Arrays.asList(tier(1), tier(3)), GuildTier::getLevel, false);
+
+        assertNull(index.get(2));
+        assertNull(index.get(0));
+        assertNull(index.get(4));
+        assertNull(index.get(Integer.MIN_VALUE));
+        assertNull(index.get(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void levelsDoNotHaveToStartAtZero() {
+        GuildTier negative = tier(-2);
+        GuildTier high = tier(10);
+        LevelIndex<GuildTier> index = new LevelIndex<>(Arrays.asList(high, negative), GuildTier::getLevel, false);
+
+        assertSame(negative, index.get(-2));
+        assertSame(high, index.get(10));
+        assertNull(index.get(0));
+    }
+
+    @Test
+    void firstLoadedValueWinsForDuplicateLevels() {
+        GuildTier first = tier(1);
+        GuildTier second = tier(1);
+        LevelIndex<GuildTier> index = new LevelIndex<>(Arrays.asList(first, second), GuildTier::getLevel, false);
+
+        assertSame(first, index.get(1));
+        assertEquals(2, index.getValues().size());
+    }
+
+    @Test
+    void lowestFollowsTheDirection() {
+        GuildTier one = tier(1);
+        GuildTier two = tier(2);
+        GuildTier three = tier(3);
+        List<GuildTier> values = Arrays.asList(two, three, one);
+
+        // Tiers start at the smallest level, roles at the highest
+        assertSame(one, new LevelIndex<>(values, GuildTier::getLevel, false).getLowest());
+        assertSame(three, new LevelIndex<>(values, GuildTier::getLevel, true).getLowest());
+    }
+
+    @Test
+    void valuesKeepTheLoadOrder() {
+        List<GuildTier> values = Arrays.asList(tier(3), tier(1), tier(2));
+        LevelIndex<GuildTier> index = new LevelIndex<>(values, GuildTier::getLevel, false);
+
+        assertEquals(values, index.getValues());
+    }
+
+    @Test
+    void emptyIndex() {
+        LevelIndex<GuildTier> index = new LevelIndex<>(Collections.emptyList(), GuildTier::getLevel, false);
+
+        assertNull(index.get(0));
+        assertNull(index.getLowest());
+        assertEquals(0, index.getValues().size());
+    }
+}